@@ -1,126 +1,162 @@
 package com.hospital.controller;
 
-import com.hospital.entity.Department;
-import com.hospital.entity.Disease;
-import com.hospital.entity.Doctor;
-import com.hospital.entity.Patient;
-import com.hospital.entity.Registration;
-import com.hospital.entity.User;
 import com.hospital.model.AdminStatsResponse;
-import com.hospital.model.RecentRegistrationDto;
+import com.hospital.model.DoctorWorkloadDto;
+import com.hospital.model.FinanceSummaryDto;
 import com.hospital.model.Result;
-import com.hospital.repository.DepartmentRepository;
-import com.hospital.repository.DiseaseRepository;
-import com.hospital.repository.DoctorRepository;
-import com.hospital.repository.PatientRepository;
-import com.hospital.repository.RegistrationRepository;
-import com.hospital.repository.UserRepository;
+import com.hospital.model.TimeSeriesPoint;
+import com.hospital.security.CustomUserDetailsService;
+import com.hospital.security.UserSecurityVersionRegistry;
+import com.hospital.service.AdminStatsService;
+import com.hospital.service.AdminStatsStreamService;
+import com.hospital.service.DoctorAnalyticsService;
+import com.hospital.service.FinanceService;
+import com.hospital.service.MailOutboxService;
+import com.hospital.service.RegistrationAdmissionService;
+import com.hospital.service.RegistrationCounterService;
+import com.hospital.service.SlotInventory;
+import com.hospital.util.AdmissionQueue;
+import com.hospital.util.BoundedTtlCache;
+import com.hospital.util.SnapshotCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/admin")
 public class AdminController {
 
     @Autowired
-    private UserRepository userRepository;
+    private AdminStatsService adminStatsService;
 
     @Autowired
-    private DoctorRepository doctorRepository;
+    private AdminStatsStreamService adminStatsStreamService;
 
     @Autowired
-    private PatientRepository patientRepository;
+    private DoctorAnalyticsService doctorAnalyticsService;
 
     @Autowired
-    private DiseaseRepository diseaseRepository;
+    private FinanceService financeService;
 
     @Autowired
-    private RegistrationRepository registrationRepository;
+    private CustomUserDetailsService userDetailsService;
 
     @Autowired
-    private DepartmentRepository departmentRepository;
+    private UserSecurityVersionRegistry securityVersionRegistry;
 
+    @Autowired
+    private MailOutboxService mailOutboxService;
+
+    @Autowired
+    private SlotInventory slotInventory;
+
+    @Autowired
+    private RegistrationAdmissionService registrationAdmissionService;
+
+    @Autowired
+    private RegistrationCounterService registrationCounterService;
+
+    // 返回缓存快照；带 If-None-Match / If-Modified-Since 的轮询在内容未变时得到 304
     @GetMapping("/stats")
-    public Result<AdminStatsResponse> getStats() {
-        AdminStatsResponse stats = new AdminStatsResponse();
-
-        stats.setTotalUsers(userRepository.count());
-        stats.setTotalDoctors(doctorRepository.count());
-        stats.setTotalPatients(patientRepository.count());
-        stats.setTotalDiseases(diseaseRepository.count());
-        stats.setDepartmentCount(departmentRepository.count());
-
-        LocalDate today = LocalDate.now();
-        LocalDateTime startOfDay = today.atStartOfDay();
-        LocalDateTime endOfDay = today.atTime(LocalTime.MAX);
-
-        stats.setTodayRegistrations(registrationRepository.findAll().stream()
-                .filter(r -> r.getAppointmentTime() != null
-                        && !r.getAppointmentTime().isBefore(startOfDay)
-                        && !r.getAppointmentTime().isAfter(endOfDay))
-                .count());
-
-        LocalDate firstDayOfMonth = today.withDayOfMonth(1);
-        stats.setMonthRegistrations(registrationRepository.findAll().stream()
-                .filter(r -> r.getAppointmentTime() != null
-                        && !r.getAppointmentTime().isBefore(firstDayOfMonth.atStartOfDay())
-                        && r.getAppointmentTime().getMonth() == today.getMonth()
-                        && r.getAppointmentTime().getYear() == today.getYear())
-                .count());
-
-        Map<String, Long> byDepartment = registrationRepository.findAll().stream()
-                .collect(Collectors.groupingBy(r -> {
-                    if (r.getDisease() != null && r.getDisease().getDepartment() != null) {
-                        return r.getDisease().getDepartment().getName();
-                    }
-                    if (r.getDoctor() != null && r.getDoctor().getDepartment() != null) {
-                        return r.getDoctor().getDepartment().getName();
-                    }
-                    return "未分配科室";
-                }, Collectors.counting()));
-
-        List<AdminStatsResponse.DepartmentStat> departmentStats = byDepartment.entrySet().stream()
-                .map(entry -> {
-                    AdminStatsResponse.DepartmentStat stat = new AdminStatsResponse.DepartmentStat();
-                    stat.setDepartment(entry.getKey());
-                    stat.setCount(entry.getValue());
-                    return stat;
-                })
-                .sorted(Comparator.comparing(AdminStatsResponse.DepartmentStat::getCount).reversed())
-                .toList();
-        stats.setRegistrationByDepartment(departmentStats);
-
-        List<RecentRegistrationDto> recentRegistrations = registrationRepository.findAll().stream()
-                .sorted(Comparator.comparing(Registration::getRegistrationTime, Comparator.nullsLast(Comparator.naturalOrder())).reversed())
-                .limit(8)
-                .map(this::toRecentDto)
-                .toList();
-        stats.setRecentRegistrations(recentRegistrations);
-
-        return Result.success(stats);
+    public ResponseEntity<Result<AdminStatsResponse>> getStats() {
+        SnapshotCache.Snapshot<AdminStatsResponse> snapshot = adminStatsService.getStatsSnapshot();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.etag())
+                .lastModified(snapshot.modifiedAt())
+                .header("X-Stats-Generated-At", snapshot.generatedAt().toString())
+                .body(Result.success(snapshot.value()));
+    }
+
+    // 仪表盘增量推送（SSE）：registration-created、registration-status、department-count、recent-registration、resync
+    @GetMapping(value = "/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStats(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return adminStatsStreamService.subscribe(lastEventId);
+    }
+
+    @GetMapping("/stats/timeseries")
+    public Result<List<TimeSeriesPoint>> getTimeSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") String granularity,
+            @RequestParam(required = false) String groupBy) {
+        try {
+            return Result.success(adminStatsService.getTimeSeries(from, to, granularity, groupBy));
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
+        }
+    }
+
+    // 医生工作量，默认统计最近 30 天（含今天）
+    @GetMapping("/analytics/doctors")
+    public Result<List<DoctorWorkloadDto>> getDoctorWorkload(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        try {
+            return Result.success(doctorAnalyticsService.getDoctorWorkload(start, end));
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
+        }
+    }
+
+    // 费用汇总，默认统计本月（按挂号时间）
+    @GetMapping("/finance")
+    public Result<FinanceSummaryDto> getFinanceSummary(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.withDayOfMonth(1);
+        try {
+            return Result.success(financeService.getSummary(start, end));
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
+        }
+    }
+
+    @GetMapping("/caches")
+    public Result<List<BoundedTtlCache.CacheStats>> getCacheStats() {
+        return Result.success(List.of(
+                userDetailsService.cacheStats(),
+                securityVersionRegistry.cacheStats()
+        ));
+    }
+
+    @GetMapping("/booking-inventory")
+    public Result<SlotInventory.InventoryStats> getBookingInventoryStats() {
+        return Result.success(slotInventory.stats());
+    }
+
+    @GetMapping("/registration-queue")
+    public Result<AdmissionQueue.Stats> getRegistrationQueueStats() {
+        return Result.success(registrationAdmissionService.stats());
+    }
+
+    // 立即从挂号表校准计数，返回被修正的计数个数
+    @PostMapping("/registration-counters/reconcile")
+    public Result<Integer> reconcileRegistrationCounters() {
+        try {
+            return Result.success(registrationCounterService.reconcile());
+        } catch (IllegalStateException e) {
+            return Result.error(409, e.getMessage());
+        }
     }
 
-    private RecentRegistrationDto toRecentDto(Registration registration) {
-        RecentRegistrationDto dto = new RecentRegistrationDto();
-        dto.setId(registration.getId());
-        dto.setAppointmentTime(registration.getAppointmentTime());
-        dto.setDepartment(registration.getDoctor() != null && registration.getDoctor().getDepartment() != null
-                ? registration.getDoctor().getDepartment().getName()
-                : null);
-        dto.setDoctorName(registration.getDoctor() != null ? registration.getDoctor().getName() : null);
-        dto.setPatientName(registration.getPatient() != null ? registration.getPatient().getName() : null);
-        dto.setDisease(registration.getDisease() != null ? registration.getDisease().getName() : null);
-        dto.setStatus(registration.getStatus() != null ? registration.getStatus().name() : "WAITING");
-        return dto;
+    @GetMapping("/mail-outbox")
+    public Result<MailOutboxService.MailOutboxStats> getMailOutboxStats() {
+        return Result.success(mailOutboxService.stats());
     }
 }
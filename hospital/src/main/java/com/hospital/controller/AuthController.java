@@ -2,6 +2,7 @@ package com.hospital.controller;
 
 import com.hospital.entity.Patient;
 import com.hospital.entity.User;
+import com.hospital.exception.ServiceBusyException;
 import com.hospital.model.AuthRequest;
 import com.hospital.model.AuthResponse;
 import com.hospital.model.RegisterRequest;
@@ -9,38 +10,37 @@ import com.hospital.model.ResetPasswordRequest;
 import com.hospital.model.Result;
 import com.hospital.model.SendResetCodeRequest;
 import com.hospital.repository.UserRepository;
+import com.hospital.security.AuthRateLimiter;
+import com.hospital.security.TokenRevocationService;
+import com.hospital.service.AuthService;
 import com.hospital.service.PatientService;
 import com.hospital.service.PasswordResetService;
 import com.hospital.service.UserService;
 import com.hospital.util.JwtTokenUtil;
+import com.hospital.util.VerifiedToken;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseCookie;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.util.StringUtils;
 
 import java.time.Duration;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
     @Autowired
-    private AuthenticationManager authenticationManager;
-
-    @Autowired
-    private UserDetailsService userDetailsService;
+    private AuthService authService;
 
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
@@ -57,25 +57,31 @@ public class AuthController {
     @Autowired
     private PasswordResetService passwordResetService;
 
+    @Autowired
+    private AuthRateLimiter authRateLimiter;
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
     @PostMapping("/login")
     public Result<AuthResponse> createAuthenticationToken(@RequestBody AuthRequest authenticationRequest,
                                                           HttpServletRequest request,
                                                           HttpServletResponse response) throws Exception {
+        // 限流在查询用户和 BCrypt 校验之前执行
+        authRateLimiter.checkLogin(authenticationRequest.getUsername(), request.getRemoteAddr());
+
+        // 一次查询、一次密码比对，令牌与 Cookie 都由同一个 User 生成
+        User user;
         try {
-            authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(authenticationRequest.getUsername(), authenticationRequest.getPassword())
-            );
+            user = authService.login(authenticationRequest.getUsername(), authenticationRequest.getPassword());
         } catch (BadCredentialsException e) {
             return Result.error(4001, "用户名或密码错误");
+        } catch (DisabledException e) {
+            return Result.error(4013, "用户已被禁用");
         }
 
-        final UserDetails userDetails = userDetailsService.loadUserByUsername(authenticationRequest.getUsername());
-        final String token = jwtTokenUtil.generateToken(userDetails);
-
-        // 获取用户角色
-        String role = userRepository.findByUsername(authenticationRequest.getUsername())
-                .map(user -> user.getRole().name())
-                .orElse("ROLE_USER");
+        final String token = jwtTokenUtil.generateToken(user);
+        String role = user.getRole().name();
 
         ResponseCookie cookie = ResponseCookie.from(JwtTokenUtil.AUTH_COOKIE_NAME, token)
                 .httpOnly(true)
@@ -86,7 +92,7 @@ public class AuthController {
                 .build();
         response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
 
-        return Result.success(new AuthResponse(token, authenticationRequest.getUsername(), role));
+        return Result.success(new AuthResponse(token, user.getUsername(), role));
     }
 
     @PostMapping("/register")
@@ -161,14 +167,29 @@ public class AuthController {
         }
 
         String username = authentication.getName();
-        Optional<User.Role> roleOptional = userRepository.findByUsername(username).map(User::getRole);
-        String role = roleOptional.map(Enum::name).orElse("ROLE_USER");
+        // 角色已由过滤器放入权限列表（ROLE_ 前缀），无需再次查询用户表
+        String role = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith("ROLE_"))
+                .map(authority -> authority.substring("ROLE_".length()))
+                .findFirst()
+                .orElse("ROLE_USER");
 
         return Result.success(new AuthResponse(null, username, role));
     }
 
     @PostMapping("/logout")
     public Result<String> logout(HttpServletRequest request, HttpServletResponse response) {
+        // 注销当前令牌（按 jti），仅删除 Cookie 无法阻止已泄露的令牌继续使用
+        String token = jwtTokenUtil.resolveToken(request);
+        if (token != null) {
+            try {
+                VerifiedToken verifiedToken = jwtTokenUtil.verify(token);
+                revocationService.revoke(verifiedToken.tokenId(), verifiedToken.expiration());
+            } catch (JwtException | IllegalArgumentException ignored) {
+                // 无效或已过期的令牌本身就无法再使用
+            }
+        }
         ResponseCookie deleteCookie = ResponseCookie.from(JwtTokenUtil.AUTH_COOKIE_NAME, "")
                 .httpOnly(true)
                 .secure(request.isSecure())
@@ -181,19 +202,23 @@ public class AuthController {
     }
 
     @PostMapping("/password/send-code")
-    public Result<String> sendResetCode(@RequestBody SendResetCodeRequest request) {
+    public Result<String> sendResetCode(@RequestBody SendResetCodeRequest request, HttpServletRequest httpRequest) {
+        authRateLimiter.checkPasswordReset(request.getUsername(), httpRequest.getRemoteAddr());
         try {
             passwordResetService.sendResetCode(request.getUsername(), request.getEmail());
             return Result.success("验证码已发送，请查收邮箱");
         } catch (IllegalArgumentException e) {
             return Result.error(4006, e.getMessage());
+        } catch (ServiceBusyException e) {
+            throw e;
         } catch (Exception e) {
             return Result.error(500, "发送验证码失败，请稍后再试");
         }
     }
 
     @PostMapping("/password/reset")
-    public Result<String> resetPassword(@RequestBody ResetPasswordRequest request) {
+    public Result<String> resetPassword(@RequestBody ResetPasswordRequest request, HttpServletRequest httpRequest) {
+        authRateLimiter.checkPasswordReset(request.getUsername(), httpRequest.getRemoteAddr());
         if (!StringUtils.hasText(request.getNewPassword()) || request.getNewPassword().length() < 6) {
             return Result.error(4007, "新密码长度不能少于6位");
         }
@@ -202,6 +227,8 @@ public class AuthController {
             return Result.success("密码重置成功");
         } catch (IllegalArgumentException e) {
             return Result.error(4006, e.getMessage());
+        } catch (ServiceBusyException e) {
+            throw e;
         } catch (Exception e) {
             return Result.error(500, "密码重置失败，请稍后再试");
         }
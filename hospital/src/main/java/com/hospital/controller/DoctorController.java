@@ -5,7 +5,6 @@ import com.hospital.entity.Disease;
 import com.hospital.entity.MedicalRecord;
 import com.hospital.entity.Patient;
 import com.hospital.entity.Registration;
-import com.hospital.entity.User;
 import com.hospital.model.BatchUpdateRegistrationStatusRequest;
 import com.hospital.model.DoctorPatientSummary;
 import com.hospital.model.DoctorRegistrationDto;
@@ -17,16 +16,18 @@ import com.hospital.model.UpdateRegistrationStatusRequest;
 import com.hospital.repository.DiseaseRepository;
 import com.hospital.repository.MedicalRecordRepository;
 import com.hospital.repository.RegistrationRepository;
-import com.hospital.repository.UserRepository;
+import com.hospital.security.CurrentActor;
+import com.hospital.service.BookingService;
+import com.hospital.service.OptimisticRetryService;
 import com.hospital.service.DoctorService;
 import com.hospital.service.PatientService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Objects;
@@ -39,9 +40,6 @@ public class DoctorController {
     @Autowired
     private DoctorService doctorService;
 
-    @Autowired
-    private UserRepository userRepository;
-
     @Autowired
     private RegistrationRepository registrationRepository;
 
@@ -54,6 +52,12 @@ public class DoctorController {
     @Autowired
     private PatientService patientService;
 
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private OptimisticRetryService optimisticRetryService;
+
     @GetMapping
     public Result<List<Doctor>> getAllDoctors() {
         return Result.success(doctorService.getAllDoctors());
@@ -74,42 +78,40 @@ public class DoctorController {
     }
 
     @GetMapping("/current")
-    public Result<Doctor> getCurrentDoctor(Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        return doctor.map(Result::success)
-                .orElseGet(() -> Result.error(404, "Doctor not found for current user"));
+    public Result<Doctor> getCurrentDoctor(@CurrentActor Doctor doctor) {
+        if (doctor == null) {
+            return Result.error(404, "Doctor not found for current user");
+        }
+        return Result.success(doctor);
     }
 
     @GetMapping("/patients")
-    public Result<List<DoctorPatientSummary>> getPatientsForDoctor(Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+    public Result<List<DoctorPatientSummary>> getPatientsForCurrentDoctor(@CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
 
-        List<DoctorPatientSummary> patients = getPatientsForDoctor(doctor.get()).stream()
+        List<DoctorPatientSummary> patients = getPatientsForDoctor(doctor).stream()
                 .map(this::toPatientSummary)
                 .collect(Collectors.toList());
         return Result.success(patients);
     }
 
     @GetMapping("/patients/details")
-    public Result<List<PatientDetailsDto>> getPatientsWithDetails(Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+    public Result<List<PatientDetailsDto>> getPatientsWithDetails(@CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
-        List<PatientDetailsDto> patients = patientService.getPatientsWithDetailsByDoctor(doctor.get().getId());
+        List<PatientDetailsDto> patients = patientService.getPatientsWithDetailsByDoctor(doctor.getId());
         return Result.success(patients);
     }
 
     @GetMapping("/registrations")
-    public Result<List<DoctorRegistrationDto>> getDoctorRegistrations(Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+    public Result<List<DoctorRegistrationDto>> getDoctorRegistrations(@CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
-        List<DoctorRegistrationDto> registrations = registrationRepository.findByDoctorId(doctor.get().getId())
+        List<DoctorRegistrationDto> registrations = registrationRepository.findByDoctorId(doctor.getId())
                 .stream()
                 .map(this::toDto)
                 .collect(Collectors.toList());
@@ -119,15 +121,14 @@ public class DoctorController {
     @PostMapping("/registrations/{id}/medical-record")
     public Result<MedicalRecord> createOrUpdateMedicalRecord(@PathVariable Long id,
                                                              @RequestBody MedicalRecordRequest request,
-                                                             Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+                                                             @CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
 
         Optional<Registration> optionalRegistration = registrationRepository.findById(id);
         if (optionalRegistration.isEmpty() || optionalRegistration.get().getDoctor() == null
-                || !doctor.get().getId().equals(optionalRegistration.get().getDoctor().getId())) {
+                || !doctor.getId().equals(optionalRegistration.get().getDoctor().getId())) {
             return Result.error(404, "Registration not found for this doctor");
         }
         Registration registration = optionalRegistration.get();
@@ -155,15 +156,14 @@ public class DoctorController {
     }
 
     @GetMapping("/registrations/{id}/medical-record")
-    public Result<MedicalRecord> getMedicalRecord(@PathVariable Long id, Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+    public Result<MedicalRecord> getMedicalRecord(@PathVariable Long id, @CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
 
         Optional<Registration> optionalRegistration = registrationRepository.findById(id);
         if (optionalRegistration.isEmpty() || optionalRegistration.get().getDoctor() == null
-                || !doctor.get().getId().equals(optionalRegistration.get().getDoctor().getId())) {
+                || !doctor.getId().equals(optionalRegistration.get().getDoctor().getId())) {
             return Result.error(404, "Registration not found for this doctor");
         }
 
@@ -174,88 +174,100 @@ public class DoctorController {
     @PutMapping("/registrations/{id}/status")
     public Result<DoctorRegistrationDto> updateRegistrationStatus(@PathVariable Long id,
                                                                   @RequestBody UpdateRegistrationStatusRequest request,
-                                                                  Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+                                                                  @CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
 
-        Optional<Registration> optionalRegistration = registrationRepository.findById(id);
-        if (optionalRegistration.isEmpty() || optionalRegistration.get().getDoctor() == null
-                || !doctor.get().getId().equals(optionalRegistration.get().getDoctor().getId())) {
-            return Result.error(404, "Registration not found for this doctor");
-        }
+        Long doctorId = doctor.getId();
+        return optimisticRetryService.execute(() -> {
+            Optional<Registration> optionalRegistration = registrationRepository.findById(id);
+            if (optionalRegistration.isEmpty() || optionalRegistration.get().getDoctor() == null
+                    || !doctorId.equals(optionalRegistration.get().getDoctor().getId())) {
+                return Result.<DoctorRegistrationDto>error(404, "Registration not found for this doctor");
+            }
 
-        if ("completed".equalsIgnoreCase(request.getStatus())
-                && medicalRecordRepository.findByRegistrationId(id).isEmpty()) {
-            return Result.error(400, "Medical record is required before completing the registration");
-        }
+            if ("completed".equalsIgnoreCase(request.getStatus())
+                    && medicalRecordRepository.findByRegistrationId(id).isEmpty()) {
+                return Result.<DoctorRegistrationDto>error(400, "Medical record is required before completing the registration");
+            }
 
-        Registration.Status newStatus = mapStatusFromFrontend(request.getStatus());
-        if (newStatus == null) {
-            return Result.error(400, "Invalid status value");
-        }
+            Registration.Status newStatus = mapStatusFromFrontend(request.getStatus());
+            if (newStatus == null) {
+                return Result.<DoctorRegistrationDto>error(400, "Invalid status value");
+            }
 
-        Registration registration = optionalRegistration.get();
-        registration.setStatus(newStatus);
-        registrationRepository.save(registration);
-        return Result.success(toDto(registration));
+            Registration registration = optionalRegistration.get();
+            bookingService.changeStatus(registration, newStatus);
+            registrationRepository.flush();
+            return Result.success(toDto(registration));
+        }, () -> currentRegistration(id));
     }
 
     @PutMapping("/registrations/{id}")
     public Result<DoctorRegistrationDto> updateRegistration(@PathVariable Long id,
                                                             @RequestBody DoctorRegistrationUpdateRequest request,
-                                                            Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+                                                            @CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
 
-        Optional<Registration> optionalRegistration = registrationRepository.findById(id);
-        if (optionalRegistration.isEmpty() || optionalRegistration.get().getDoctor() == null
-                || !doctor.get().getId().equals(optionalRegistration.get().getDoctor().getId())) {
-            return Result.error(404, "Registration not found for this doctor");
-        }
-
-        Registration registration = optionalRegistration.get();
-
-        if (request.getStatus() != null) {
-            Registration.Status status = mapStatusFromFrontend(request.getStatus());
-            if (status == null) {
-                return Result.error(400, "Invalid status value");
+        Long doctorId = doctor.getId();
+        // 每次尝试重新读取挂号并应用修改，版本冲突时自动重试
+        return optimisticRetryService.execute(() -> {
+            Optional<Registration> optionalRegistration = registrationRepository.findById(id);
+            if (optionalRegistration.isEmpty() || optionalRegistration.get().getDoctor() == null
+                    || !doctorId.equals(optionalRegistration.get().getDoctor().getId())) {
+                return Result.<DoctorRegistrationDto>error(404, "Registration not found for this doctor");
             }
-            if (status == Registration.Status.COMPLETED
-                    && medicalRecordRepository.findByRegistrationId(id).isEmpty()) {
-                return Result.error(400, "Medical record is required before completing the registration");
+
+            Registration registration = optionalRegistration.get();
+
+            Registration.Status newStatus = null;
+            if (request.getStatus() != null) {
+                Registration.Status status = mapStatusFromFrontend(request.getStatus());
+                if (status == null) {
+                    return Result.<DoctorRegistrationDto>error(400, "Invalid status value");
+                }
+                if (status == Registration.Status.COMPLETED
+                        && medicalRecordRepository.findByRegistrationId(id).isEmpty()) {
+                    return Result.<DoctorRegistrationDto>error(400, "Medical record is required before completing the registration");
+                }
+                newStatus = status;
             }
-            registration.setStatus(status);
-        }
 
-        if (request.getAppointmentTime() != null) {
-            try {
-                registration.setAppointmentTime(parseAppointmentTime(request.getAppointmentTime()));
-            } catch (DateTimeParseException e) {
-                return Result.error(400, "Invalid appointmentTime format, expected ISO date time");
+            if (request.getAppointmentTime() != null) {
+                try {
+                    // 改期同步排班与号源
+                    bookingService.reschedule(registration, parseAppointmentTime(request.getAppointmentTime()));
+                } catch (DateTimeParseException e) {
+                    return Result.<DoctorRegistrationDto>error(400, "Invalid appointmentTime format, expected ISO date time");
+                }
             }
-        }
 
-        if (request.getNotes() != null) {
-            registration.setNotes(request.getNotes());
-        }
+            if (request.getNotes() != null) {
+                registration.setNotes(request.getNotes());
+            }
 
-        if (request.getDiseaseId() != null) {
-            diseaseRepository.findById(request.getDiseaseId()).ifPresent(registration::setDisease);
-        }
+            if (request.getDiseaseId() != null) {
+                diseaseRepository.findById(request.getDiseaseId()).ifPresent(registration::setDisease);
+            }
 
-        registrationRepository.save(registration);
-        return Result.success(toDto(registration));
+            // 状态变化时同步排班号源
+            if (newStatus != null && newStatus != registration.getStatus()) {
+                bookingService.changeStatus(registration, newStatus);
+            } else {
+                registrationRepository.save(registration);
+            }
+            registrationRepository.flush();
+            return Result.success(toDto(registration));
+        }, () -> currentRegistration(id));
     }
 
     @PutMapping("/registrations/batch/status")
     public Result<Void> batchUpdateRegistrationStatus(@RequestBody BatchUpdateRegistrationStatusRequest request,
-                                                      Authentication authentication) {
-        Optional<Doctor> doctor = resolveCurrentDoctor(authentication);
-        if (doctor.isEmpty()) {
+                                                      @CurrentActor Doctor doctor) {
+        if (doctor == null) {
             return Result.error(403, "Current user is not a doctor or not authenticated");
         }
 
@@ -268,21 +280,27 @@ public class DoctorController {
             return Result.error(400, "Invalid status value");
         }
 
-        List<Registration> registrations = registrationRepository.findAllById(request.getIds());
-        if (registrations.size() != request.getIds().size()) {
-            return Result.error(404, "Some registrations not found");
-        }
+        Long doctorId = doctor.getId();
+        // 整批在同一事务中修改，任一挂号版本冲突则整批回滚后重试
+        return optimisticRetryService.execute(() -> {
+            List<Registration> registrations = registrationRepository.findAllById(request.getIds());
+            if (registrations.size() != request.getIds().size()) {
+                return Result.<Void>error(404, "Some registrations not found");
+            }
 
-        Long doctorId = doctor.get().getId();
-        boolean hasOtherDoctorRegistration = registrations.stream()
-                .anyMatch(reg -> reg.getDoctor() == null || !doctorId.equals(reg.getDoctor().getId()));
-        if (hasOtherDoctorRegistration) {
-            return Result.error(403, "Contains registration that does not belong to current doctor");
-        }
+            boolean hasOtherDoctorRegistration = registrations.stream()
+                    .anyMatch(reg -> reg.getDoctor() == null || !doctorId.equals(reg.getDoctor().getId()));
+            if (hasOtherDoctorRegistration) {
+                return Result.<Void>error(403, "Contains registration that does not belong to current doctor");
+            }
 
-        registrations.forEach(reg -> reg.setStatus(status));
-        registrationRepository.saveAll(registrations);
-        return Result.success();
+            // 按 id 顺序锁定挂号行，两个批量请求交叉时不会互相等待成死锁
+            bookingService.changeStatus(registrations.stream()
+                    .sorted(Comparator.comparing(Registration::getId))
+                    .toList(), status);
+            registrationRepository.flush();
+            return Result.<Void>success();
+        }, () -> registrationRepository.findAllById(request.getIds()).stream().map(this::toDto).toList());
     }
 
     @GetMapping("/department/{department}")
@@ -330,15 +348,6 @@ public class DoctorController {
         return Result.success(doctorService.getDoctorDiseases(id));
     }
 
-    private Optional<Doctor> resolveCurrentDoctor(Authentication authentication) {
-        if (authentication == null || !authentication.isAuthenticated()) {
-            return Optional.empty();
-        }
-        return userRepository.findByUsername(authentication.getName())
-                .filter(user -> User.Role.DOCTOR.equals(user.getRole()))
-                .flatMap(user -> doctorService.getDoctorByUserId(user.getId()));
-    }
-
     private Registration.Status mapStatusFromFrontend(String status) {
         if (status == null) {
             return null;
@@ -383,6 +392,10 @@ public class DoctorController {
         return dto;
     }
 
+    private DoctorRegistrationDto currentRegistration(Long id) {
+        return registrationRepository.findById(id).map(this::toDto).orElse(null);
+    }
+
     private LocalDateTime parseAppointmentTime(String raw) {
         try {
             return LocalDateTime.parse(raw);
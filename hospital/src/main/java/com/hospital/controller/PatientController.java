@@ -3,6 +3,7 @@ package com.hospital.controller;
 import com.hospital.entity.Patient;
 import com.hospital.model.PatientDetailsDto;
 import com.hospital.model.Result;
+import com.hospital.security.CurrentActor;
 import com.hospital.service.PatientService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +23,14 @@ public class PatientController {
         return Result.success(patientService.getAllPatients());
     }
 
+    @GetMapping("/current")
+    public Result<Patient> getCurrentPatient(@CurrentActor Patient patient) {
+        if (patient == null) {
+            return Result.error(404, "当前用户不是患者");
+        }
+        return Result.success(patient);
+    }
+
     @GetMapping("/{id}")
     public Result<Patient> getPatientById(@PathVariable Long id) {
         Optional<Patient> patient = patientService.getPatientById(id);
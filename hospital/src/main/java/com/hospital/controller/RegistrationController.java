@@ -1,12 +1,17 @@
 package com.hospital.controller;
 
 import com.hospital.entity.Registration;
+import com.hospital.exception.ConcurrentUpdateException;
 import com.hospital.model.Result;
 import com.hospital.repository.RegistrationRepository;
+import com.hospital.model.AdmissionTicketDto;
+import com.hospital.service.AppointmentConflictService;
+import com.hospital.service.BookingService;
+import com.hospital.service.OptimisticRetryService;
+import com.hospital.service.RegistrationAdmissionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +22,18 @@ public class RegistrationController {
     @Autowired
     private RegistrationRepository registrationRepository;
 
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private RegistrationAdmissionService registrationAdmissionService;
+
+    @Autowired
+    private OptimisticRetryService optimisticRetryService;
+
+    @Autowired
+    private AppointmentConflictService appointmentConflictService;
+
     @GetMapping
     public Result<List<Registration>> getAllRegistrations() {
         return Result.success(registrationRepository.findAll());
@@ -29,8 +46,20 @@ public class RegistrationController {
                 .orElseGet(() -> Result.error(404, "挂号记录不存在"));
     }
 
+    // 领取挂号排队号（registration.admission.enabled=true 时提交挂号需先排队）
+    @PostMapping("/queue")
+    public Result<AdmissionTicketDto> enqueue() {
+        return Result.success(registrationAdmissionService.issueTicket());
+    }
+
+    @GetMapping("/queue/{ticketId}")
+    public Result<AdmissionTicketDto> getQueueTicket(@PathVariable String ticketId) {
+        return Result.success(registrationAdmissionService.getTicket(ticketId));
+    }
+
     @PostMapping
-    public Result<Registration> createRegistration(@RequestBody Registration registration) {
+    public Result<Registration> createRegistration(@RequestBody Registration registration,
+                                                   @RequestHeader(value = "X-Admission-Ticket", required = false) String admissionTicket) {
         // 验证必要字段：patient 和 appointmentTime
         if (registration.getPatient() == null || registration.getPatient().getId() == null) {
             return Result.error(4001, "患者信息不能为空");
@@ -44,52 +73,57 @@ public class RegistrationController {
 
         // disease 字段现在是可选的，不再强制要求
 
-        // 检查时间冲突
-        LocalDateTime appointmentTime = registration.getAppointmentTime();
-        LocalDateTime startTime = appointmentTime.minusMinutes(30);
-        LocalDateTime endTime = appointmentTime.plusMinutes(30);
-
-        List<Registration> conflicts = registrationRepository.findConflictingRegistrations(
-                registration.getPatient().getId(),
-                startTime,
-                endTime
-        );
-
-        if (!conflicts.isEmpty()) {
-            return Result.error(4004, "该时间段已有挂号记录，请选择其他时间");
+        // 开启排队时占用已放行的排队号，未放行返回 429；挂号成功才核销，冲突或号源已满时归还，客户端不必重新排队
+        registrationAdmissionService.admit(admissionTicket);
+        boolean booked = false;
+        try {
+            // 检查时间冲突与保存在同一患者锁内完成，同一患者的并发挂号不会都通过检查
+            Long patientId = registration.getPatient().getId();
+            Result<Registration> result = appointmentConflictService.withPatientLock(patientId, () -> {
+                if (appointmentConflictService.hasConflict(patientId, registration.getAppointmentTime(), null)) {
+                    return Result.<Registration>error(4004, "该时间段已有挂号记录，请选择其他时间");
+                }
+                // 占用排班号源，已满时抛出 SlotUnavailableException（409）
+                Registration savedRegistration = bookingService.book(registration);
+                return Result.success(savedRegistration);
+            });
+            booked = result.getCode() == 0;
+            return result;
+        } finally {
+            if (booked) {
+                registrationAdmissionService.complete(admissionTicket);
+            } else {
+                registrationAdmissionService.release(admissionTicket);
+            }
         }
-
-        Registration savedRegistration = registrationRepository.save(registration);
-        return Result.success(savedRegistration);
     }
 
     @PutMapping("/{id}")
     public Result<Registration> updateRegistration(@PathVariable Long id, @RequestBody Registration registration) {
-        Optional<Registration> existingRegistration = registrationRepository.findById(id);
-        if (existingRegistration.isPresent()) {
+        // 每次尝试重新读取挂号并应用修改，版本冲突时自动重试，仍冲突返回 409 及最新记录
+        return optimisticRetryService.execute(() -> {
+            Optional<Registration> existingRegistration = registrationRepository.findById(id);
+            if (existingRegistration.isEmpty()) {
+                return Result.<Registration>error(404, "挂号记录不存在");
+            }
             Registration updatedRegistration = existingRegistration.get();
-
-            if (registration.getStatus() != null) {
-                updatedRegistration.setStatus(registration.getStatus());
+            // 客户端带了版本号时要求与当前一致，避免覆盖其读取之后别人做的修改
+            if (registration.getVersion() != null && !registration.getVersion().equals(updatedRegistration.getVersion())) {
+                throw new ConcurrentUpdateException("挂号记录已被修改，请刷新后重试", updatedRegistration);
             }
-            if (registration.getAppointmentTime() != null) {
-                LocalDateTime appointmentTime = registration.getAppointmentTime();
-                LocalDateTime startTime = appointmentTime.minusMinutes(30);
-                LocalDateTime endTime = appointmentTime.plusMinutes(30);
-
-                List<Registration> conflicts = registrationRepository.findConflictingRegistrations(
-                        updatedRegistration.getPatient().getId(),
-                        startTime,
-                        endTime
-                );
 
-                conflicts.removeIf(r -> r.getId().equals(id));
-
-                if (!conflicts.isEmpty()) {
-                    return Result.error(4004, "该时间段已有挂号记录，请选择其他时间");
+            Registration.Status newStatus = registration.getStatus();
+            if (registration.getAppointmentTime() != null) {
+                // 患者锁持有到本次事务提交
+                Long patientId = updatedRegistration.getPatient().getId();
+                boolean conflict = appointmentConflictService.withPatientLock(patientId,
+                        () -> appointmentConflictService.hasConflict(patientId, registration.getAppointmentTime(), id));
+                if (conflict) {
+                    return Result.<Registration>error(4004, "该时间段已有挂号记录，请选择其他时间");
                 }
 
-                updatedRegistration.setAppointmentTime(registration.getAppointmentTime());
+                // 改期同步排班：仍在原排班内只改时间，否则改挂到新排班并转移号源
+                bookingService.reschedule(updatedRegistration, registration.getAppointmentTime());
             }
             if (registration.getNotes() != null) {
                 updatedRegistration.setNotes(registration.getNotes());
@@ -99,23 +133,30 @@ public class RegistrationController {
                 updatedRegistration.setDisease(registration.getDisease());
             }
 
-            registrationRepository.save(updatedRegistration);
+            // 状态变化时同步排班号源
+            if (newStatus != null && newStatus != updatedRegistration.getStatus()) {
+                bookingService.changeStatus(updatedRegistration, newStatus);
+            } else {
+                registrationRepository.save(updatedRegistration);
+            }
+            // 提交前刷新，返回的版本号即为提交后的值
+            registrationRepository.flush();
             return Result.success(updatedRegistration);
-        } else {
-            return Result.error(404, "挂号记录不存在");
-        }
+        }, () -> registrationRepository.findById(id).orElse(null));
     }
 
     @DeleteMapping("/{id}")
     public Result<Void> deleteRegistration(@PathVariable Long id) {
-        Optional<Registration> registration = registrationRepository.findById(id);
-        if (registration.isPresent()) {
-            Registration reg = registration.get();
-            reg.setStatus(Registration.Status.CANCELLED);
-            registrationRepository.save(reg);
-            return Result.success();
-        } else {
-            return Result.error(404, "挂号记录不存在");
-        }
+        // 与更新相同：版本冲突时重新读取并重试，仍冲突返回 409 及最新记录
+        return optimisticRetryService.execute(() -> {
+            Optional<Registration> registration = registrationRepository.findById(id);
+            if (registration.isEmpty()) {
+                return Result.<Void>error(404, "挂号记录不存在");
+            }
+            // 取消挂号并释放排班号源
+            bookingService.cancel(registration.get());
+            registrationRepository.flush();
+            return Result.<Void>success();
+        }, () -> registrationRepository.findById(id).orElse(null));
     }
 }
\ No newline at end of file
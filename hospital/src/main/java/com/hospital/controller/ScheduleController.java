@@ -3,11 +3,17 @@ package com.hospital.controller;
 import com.hospital.entity.Schedule;
 import com.hospital.entity.Doctor;
 import com.hospital.entity.Department;
+import com.hospital.exception.ConcurrentUpdateException;
 import com.hospital.model.Result;
+import com.hospital.model.ScheduleHeatmapDto;
 import com.hospital.repository.DepartmentRepository;
 import com.hospital.repository.DoctorRepository;
 import com.hospital.repository.ScheduleRepository;
+import com.hospital.service.OptimisticRetryService;
+import com.hospital.service.ScheduleHeatmapService;
+import com.hospital.service.SlotInventory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
@@ -29,11 +35,35 @@ public class ScheduleController {
     @Autowired
     private DepartmentRepository departmentRepository;
 
+    @Autowired
+    private ScheduleHeatmapService scheduleHeatmapService;
+
+    @Autowired
+    private SlotInventory slotInventory;
+
+    @Autowired
+    private OptimisticRetryService optimisticRetryService;
+
     @GetMapping
     public Result<List<Schedule>> list() {
         return Result.success(scheduleRepository.findAllWithDetails());
     }
 
+    // 排班利用率热力图，默认今天起两周，按 4 小时分段
+    @GetMapping("/heatmap")
+    public Result<ScheduleHeatmapDto> heatmap(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "4") int blockHours) {
+        LocalDate start = from != null ? from : LocalDate.now();
+        LocalDate end = to != null ? to : start.plusDays(13);
+        try {
+            return Result.success(scheduleHeatmapService.getHeatmap(start, end, blockHours));
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
     public Result<Schedule> get(@PathVariable Long id) {
         Optional<Schedule> schedule = scheduleRepository.findByIdWithDetails(id);
@@ -70,7 +100,8 @@ public class ScheduleController {
             }
         }
         
-        // 设置默认值
+        // 设置默认值，新排班总是插入，忽略客户端传入的版本号
+        schedule.setVersion(null);
         if (schedule.getBooked() == null) {
             schedule.setBooked(0);
         }
@@ -89,44 +120,56 @@ public class ScheduleController {
     
     @PutMapping("/{id}")
     public Result<Schedule> update(@PathVariable Long id, @RequestBody Schedule schedule) {
-        // 查找现有的排班
-        Schedule existingSchedule = scheduleRepository.findById(id)
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Schedule not found"));
-        
-        // 验证并加载医生和科室的完整信息
-        Doctor doctor = doctorRepository.findById(schedule.getDoctor().getId())
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Doctor not found"));
-        
-        Department department = departmentRepository.findById(schedule.getDepartment().getId())
-            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Department not found"));
-        
-        // 时间冲突检测（排除当前记录）
-        LocalDate workDate = schedule.getWorkDate();
-        List<Schedule> existingSchedules = scheduleRepository.findByWorkDate(workDate);
-        
-        for (Schedule existing : existingSchedules) {
-            if (existing.getDoctor().getId().equals(schedule.getDoctor().getId()) && 
-                !existing.getId().equals(id)) {
-                // 检查时间是否重叠
-                if (schedule.getStartTime().isBefore(existing.getEndTime()) && 
-                    schedule.getEndTime().isAfter(existing.getStartTime())) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, 
-                        "Schedule conflict with existing schedule: " + existing.getId());
+        // 每次尝试重新读取排班并应用修改，版本冲突时自动重试，仍冲突返回 409 及最新排班
+        Schedule updatedSchedule = optimisticRetryService.execute(() -> {
+            // 查找现有的排班
+            Schedule existingSchedule = scheduleRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Schedule not found"));
+
+            // 客户端带了版本号时要求与当前一致，避免覆盖其读取之后别人做的修改
+            if (schedule.getVersion() != null && !schedule.getVersion().equals(existingSchedule.getVersion())) {
+                throw new ConcurrentUpdateException("排班已被修改，请刷新后重试", existingSchedule);
+            }
+
+            // 验证并加载医生和科室的完整信息
+            Doctor doctor = doctorRepository.findById(schedule.getDoctor().getId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Doctor not found"));
+
+            Department department = departmentRepository.findById(schedule.getDepartment().getId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Department not found"));
+
+            // 时间冲突检测（排除当前记录）
+            LocalDate workDate = schedule.getWorkDate();
+            List<Schedule> existingSchedules = scheduleRepository.findByWorkDate(workDate);
+
+            for (Schedule existing : existingSchedules) {
+                if (existing.getDoctor().getId().equals(schedule.getDoctor().getId()) &&
+                    !existing.getId().equals(id)) {
+                    // 检查时间是否重叠
+                    if (schedule.getStartTime().isBefore(existing.getEndTime()) &&
+                        schedule.getEndTime().isAfter(existing.getStartTime())) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Schedule conflict with existing schedule: " + existing.getId());
+                    }
                 }
             }
-        }
-        
-        // 更新字段，使用完整加载的医生和科室对象
-        existingSchedule.setDoctor(doctor);
-        existingSchedule.setDepartment(department);
-        existingSchedule.setWorkDate(schedule.getWorkDate());
-        existingSchedule.setStartTime(schedule.getStartTime());
-        existingSchedule.setEndTime(schedule.getEndTime());
-        existingSchedule.setType(schedule.getType());
-        existingSchedule.setStatus(schedule.getStatus());
-        existingSchedule.setCapacity(schedule.getCapacity());
-        
-        Schedule updatedSchedule = scheduleRepository.save(existingSchedule);
+
+            // 更新字段，使用完整加载的医生和科室对象
+            existingSchedule.setDoctor(doctor);
+            existingSchedule.setDepartment(department);
+            existingSchedule.setWorkDate(schedule.getWorkDate());
+            existingSchedule.setStartTime(schedule.getStartTime());
+            existingSchedule.setEndTime(schedule.getEndTime());
+            existingSchedule.setType(schedule.getType());
+            existingSchedule.setStatus(schedule.getStatus());
+            existingSchedule.setCapacity(schedule.getCapacity());
+
+            Schedule saved = scheduleRepository.save(existingSchedule);
+            scheduleRepository.flush();
+            return saved;
+        }, () -> scheduleRepository.findByIdWithDetails(id).orElse(null));
+        // 容量或状态可能已变化，内存号源库存按新值重新加载
+        slotInventory.evict(id);
         return Result.success(updatedSchedule);
     }
     
@@ -139,6 +182,7 @@ public class ScheduleController {
         // 检查是否有预约记录（如果有相关表的话）
         // 这里可以根据实际业务逻辑添加检查
         
+        slotInventory.evict(id);
         scheduleRepository.delete(schedule);
         return Result.success();
     }
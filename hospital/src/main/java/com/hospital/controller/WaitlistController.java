@@ -0,0 +1,45 @@
+package com.hospital.controller;
+
+import com.hospital.model.Result;
+import com.hospital.model.WaitlistEntryDto;
+import com.hospital.model.WaitlistJoinRequest;
+import com.hospital.service.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/schedules/{scheduleId}/waitlist")
+public class WaitlistController {
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    // 排班已满时加入候补，有人取消后自动转正并创建挂号
+    @PostMapping
+    public Result<WaitlistEntryDto> join(@PathVariable Long scheduleId, @RequestBody WaitlistJoinRequest request) {
+        try {
+            return Result.success(waitlistService.join(scheduleId, request.getPatientId(), request.getNotes()));
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{entryId}")
+    public Result<WaitlistEntryDto> get(@PathVariable Long scheduleId, @PathVariable Long entryId) {
+        try {
+            return Result.success(waitlistService.getEntry(scheduleId, entryId));
+        } catch (IllegalArgumentException e) {
+            return Result.error(404, e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{entryId}")
+    public Result<Void> leave(@PathVariable Long scheduleId, @PathVariable Long entryId) {
+        try {
+            waitlistService.leave(scheduleId, entryId);
+            return Result.success();
+        } catch (IllegalArgumentException e) {
+            return Result.error(400, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.hospital.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 后台任务的进度水位与租约，多节点部署时同一任务同一时间只在一个节点上运行。
+ */
+@Data
+@Entity
+@Table(name = "job_checkpoint")
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_name", length = 64)
+    private String jobName;
+
+    @Column(name = "watermark")
+    private LocalDateTime watermark;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,5 +1,7 @@
 package com.hospital.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.hospital.service.RegistrationCounterService;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -9,7 +11,13 @@ import com.hospital.entity.Schedule;
 
 @Data
 @Entity
-@Table(name = "registration")
+@EntityListeners(RegistrationChangeListener.class)
+@Table(name = "registration", indexes = {
+        @Index(name = "idx_registration_appointment_time", columnList = "appointment_time"),
+        @Index(name = "idx_registration_registration_time", columnList = "registration_time"),
+        @Index(name = "idx_registration_updated_at", columnList = "updated_at"),
+        @Index(name = "idx_registration_patient_appointment", columnList = "patient_id, appointment_time")
+})
 public class Registration {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -66,6 +74,16 @@ public class Registration {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // 乐观锁版本号，并发修改时后提交的一方失败（见 OptimisticRetryService）
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
+    // 加载时计数维度的取值，供变更监听器计算更新前后的差异
+    @Transient
+    @JsonIgnore
+    private transient RegistrationCounterService.Snapshot counterSnapshot;
+
     public enum Status {
         WAITING, CONFIRMED, COMPLETED, CANCELLED
     }
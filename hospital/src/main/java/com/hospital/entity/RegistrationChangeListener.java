@@ -0,0 +1,90 @@
+package com.hospital.entity;
+
+import com.hospital.model.RecentRegistrationDto;
+import com.hospital.service.RegistrationChangedEvent;
+import com.hospital.service.RegistrationCounterService;
+import com.hospital.service.RegistrationCounterService.Snapshot;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * 挂号实体回调，把每次新增、修改、删除转换为计数器增量，并发布 {@link RegistrationChangedEvent}。
+ * 加载时记录计数维度的原值，更新时据此计算差异。由 Hibernate 通过 Spring 容器创建。
+ */
+public class RegistrationChangeListener {
+
+    // 延迟注入，避免 EntityManagerFactory 与计数服务（依赖仓库）之间的循环依赖
+    @Autowired
+    @Lazy
+    private RegistrationCounterService counterService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostLoad
+    public void onLoad(Registration registration) {
+        registration.setCounterSnapshot(Snapshot.of(registration));
+    }
+
+    @PostPersist
+    public void onPersist(Registration registration) {
+        Snapshot after = Snapshot.of(registration);
+        counterService.apply(null, after);
+        registration.setCounterSnapshot(after);
+        publish(registration, null, after);
+    }
+
+    @PostUpdate
+    public void onUpdate(Registration registration) {
+        Snapshot after = Snapshot.of(registration);
+        Snapshot before = registration.getCounterSnapshot();
+        if (!after.equals(before)) {
+            counterService.apply(before, after);
+            publish(registration, before, after);
+        }
+        registration.setCounterSnapshot(after);
+    }
+
+    @PostRemove
+    public void onRemove(Registration registration) {
+        Snapshot before = registration.getCounterSnapshot() != null
+                ? registration.getCounterSnapshot()
+                : Snapshot.of(registration);
+        counterService.apply(before, null);
+        publish(registration, before, null);
+    }
+
+    private void publish(Registration registration, Snapshot before, Snapshot after) {
+        RecentRegistrationDto current = after != null ? toRecentDto(registration) : null;
+        eventPublisher.publishEvent(new RegistrationChangedEvent(
+                registration.getId(), before, after, departmentName(registration), current));
+    }
+
+    private static String departmentName(Registration registration) {
+        if (registration.getDisease() != null && registration.getDisease().getDepartment() != null) {
+            return registration.getDisease().getDepartment().getName();
+        }
+        if (registration.getDoctor() != null && registration.getDoctor().getDepartment() != null) {
+            return registration.getDoctor().getDepartment().getName();
+        }
+        return null;
+    }
+
+    private static RecentRegistrationDto toRecentDto(Registration registration) {
+        Doctor doctor = registration.getDoctor();
+        return new RecentRegistrationDto(
+                registration.getId(),
+                registration.getPatient() != null ? registration.getPatient().getName() : null,
+                doctor != null ? doctor.getName() : null,
+                doctor != null && doctor.getDepartment() != null ? doctor.getDepartment().getName() : null,
+                registration.getDisease() != null ? registration.getDisease().getName() : null,
+                registration.getStatus(),
+                registration.getAppointmentTime()
+        );
+    }
+}
@@ -0,0 +1,24 @@
+package com.hospital.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "registration_counter", indexes = {
+        @Index(name = "idx_registration_counter_updated_at", columnList = "updated_at")
+})
+public class RegistrationCounter {
+    // 例如 day:2024-05-01、month:2024-05、dept:3、status:WAITING
+    @Id
+    @Column(name = "counter_key", length = 64)
+    private String counterKey;
+
+    @Column(name = "counter_value", nullable = false)
+    private Long counterValue = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
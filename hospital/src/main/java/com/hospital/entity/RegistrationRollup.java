@@ -0,0 +1,62 @@
+package com.hospital.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 挂号汇总：按挂号时间（registration_time，创建后不再变化）的小时或天分桶，
+ * 每个桶再按科室、医生、类型、渠道、状态、支付状态细分。
+ */
+@Data
+@Entity
+@Table(name = "registration_rollup", indexes = {
+        @Index(name = "idx_registration_rollup_bucket", columnList = "granularity, bucket_start")
+})
+public class RegistrationRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    private Granularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    // 科室优先取病种所属科室，其次取医生所属科室，都没有时为 0
+    @Column(name = "department_id", nullable = false)
+    private Long departmentId;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Long doctorId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 20)
+    private Registration.RegistrationType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "channel", nullable = false, length = 20)
+    private Registration.Channel channel;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Registration.Status status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_status", nullable = false, length = 20)
+    private Registration.PaymentStatus paymentStatus;
+
+    @Column(name = "registration_count", nullable = false)
+    private Long registrationCount;
+
+    @Column(name = "fee_total", precision = 14, scale = 2, nullable = false)
+    private BigDecimal feeTotal;
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+}
@@ -45,7 +45,8 @@ public class Schedule {
     @Column(name = "capacity", nullable = false)
     private Integer capacity;
 
-    @Column(name = "booked", nullable = false)
+    // 只通过条件 UPDATE 增减（见 ScheduleRepository），保存实体时不会用旧值覆盖
+    @Column(name = "booked", nullable = false, updatable = false)
     private Integer booked = 0;
 
     @Column(name = "created_at", updatable = false)
@@ -54,6 +55,11 @@ public class Schedule {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // 乐观锁版本号，只保护管理员可编辑的字段；booked 及随之切换的 OPEN/FULL 状态由条件 UPDATE 维护，不递增版本号
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long version;
+
     public enum ScheduleType {
         REGULAR, SPECIALIST, EXTRA
     }
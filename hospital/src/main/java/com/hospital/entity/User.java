@@ -45,6 +45,10 @@ public class User {
     @Column(name = "last_login_at")
     private LocalDateTime lastLoginAt;
 
+    // 密码、状态或角色变化时递增，用于使已签发的无状态令牌失效
+    @Column(name = "security_version")
+    private Integer securityVersion = 0;
+
     public enum Role {
         DOCTOR, PATIENT, ADMIN
     }
@@ -67,4 +71,12 @@ public class User {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    public int currentSecurityVersion() {
+        return securityVersion == null ? 0 : securityVersion;
+    }
+
+    public void bumpSecurityVersion() {
+        securityVersion = currentSecurityVersion() + 1;
+    }
 }
@@ -0,0 +1,29 @@
+package com.hospital.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "verification_code", indexes = {
+        @Index(name = "idx_verification_code_expire_at", columnList = "expire_at")
+})
+public class VerificationCode {
+    @Id
+    @Column(name = "code_key", length = 191)
+    private String codeKey;
+
+    @Column(name = "code", nullable = false, length = 16)
+    private String code;
+
+    @Column(name = "expire_at", nullable = false)
+    private LocalDateTime expireAt;
+
+    @Column(name = "sent_at", nullable = false)
+    private LocalDateTime sentAt;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+}
@@ -0,0 +1,65 @@
+package com.hospital.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "waitlist_entry", indexes = {
+        @Index(name = "idx_waitlist_entry_schedule_status", columnList = "schedule_id, status, id"),
+        @Index(name = "idx_waitlist_entry_patient", columnList = "patient_id")
+})
+public class WaitlistEntry {
+    // 自增 id 即加入顺序，候补按 id 先进先出
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "schedule_id", nullable = false)
+    private Schedule schedule;
+
+    @ManyToOne
+    @JoinColumn(name = "patient_id", nullable = false)
+    private Patient patient;
+
+    // 状态只通过条件 UPDATE 切换（见 WaitlistEntryRepository），保存实体时不会覆盖
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20, updatable = false)
+    private Status status;
+
+    // 转正时创建的挂号
+    @Column(name = "registration_id", unique = true, updatable = false)
+    private Long registrationId;
+
+    @Column(name = "notes", length = 500)
+    private String notes;
+
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public enum Status {
+        WAITING, PROMOTED, LEFT
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        updatedAt = LocalDateTime.now();
+        if (status == null) {
+            status = Status.WAITING;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,19 @@
+package com.hospital.exception;
+
+/**
+ * 数据已被其他请求修改（版本号不一致或重试后仍冲突），对应 HTTP 409，
+ * 响应 data 中携带记录的最新状态，客户端据此合并后重新提交。
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+
+    private final transient Object current;
+
+    public ConcurrentUpdateException(String message, Object current) {
+        super(message);
+        this.current = current;
+    }
+
+    public Object getCurrent() {
+        return current;
+    }
+}
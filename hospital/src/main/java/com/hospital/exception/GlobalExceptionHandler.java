@@ -3,6 +3,9 @@ package com.hospital.exception;
 import com.hospital.model.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -19,6 +22,36 @@ public class GlobalExceptionHandler {
         return Result.error(400, ex.getMessage());
     }
 
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<Result<String>> handleServiceBusy(ServiceBusyException ex) {
+        log.warn("Request rejected, service busy: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Result.error(503, ex.getMessage()));
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Result<String>> handleTooManyRequests(TooManyRequestsException ex) {
+        log.warn("Request throttled: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(Result.error(429, ex.getMessage()));
+    }
+
+    @ExceptionHandler(SlotUnavailableException.class)
+    public ResponseEntity<Result<String>> handleSlotUnavailable(SlotUnavailableException ex) {
+        log.info("Booking rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Result.error(409, ex.getMessage()));
+    }
+
+    @ExceptionHandler(ConcurrentUpdateException.class)
+    public ResponseEntity<Result<Object>> handleConcurrentUpdate(ConcurrentUpdateException ex) {
+        log.info("Update rejected, concurrent modification: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new Result<>(409, ex.getMessage(), ex.getCurrent()));
+    }
+
     @ExceptionHandler(Exception.class)
     public Result<String> handleServerError(Exception ex) {
         log.error("Unhandled server error", ex);
@@ -0,0 +1,11 @@
+package com.hospital.exception;
+
+/**
+ * 服务端资源（线程池、队列等）已满，请求被快速拒绝，对应 HTTP 503。
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.hospital.exception;
+
+/**
+ * 排班号源已满或未开放，挂号被拒绝，对应 HTTP 409。
+ */
+public class SlotUnavailableException extends RuntimeException {
+
+    public SlotUnavailableException(String message) {
+        super(message);
+    }
+}
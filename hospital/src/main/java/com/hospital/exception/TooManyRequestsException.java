@@ -0,0 +1,11 @@
+package com.hospital.exception;
+
+/**
+ * 请求频率超出限制，对应 HTTP 429。
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    public TooManyRequestsException(String message) {
+        super(message);
+    }
+}
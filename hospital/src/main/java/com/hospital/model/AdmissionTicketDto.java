@@ -0,0 +1,15 @@
+package com.hospital.model;
+
+import com.hospital.util.AdmissionQueue;
+import lombok.Data;
+
+@Data
+public class AdmissionTicketDto {
+    private String ticketId;
+    private AdmissionQueue.State status;
+    // 当前排队位置，1 表示下一个放行；已放行或已作废时为 0
+    private long position;
+    private long estimatedWaitSeconds;
+    // 建议的下次查询间隔（秒），超过 poll-timeout 未查询的排队号会被丢弃
+    private long pollAfterSeconds;
+}
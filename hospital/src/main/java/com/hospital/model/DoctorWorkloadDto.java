@@ -0,0 +1,19 @@
+package com.hospital.model;
+
+import lombok.Data;
+
+@Data
+public class DoctorWorkloadDto {
+    private Long doctorId;
+    private String doctorName;
+    private String department;
+    private long registrations;
+    // 统计区间内平均每天的挂号数
+    private double registrationsPerDay;
+    private double completionRate;
+    private double cancellationRate;
+    // 挂号时间到预约时间的平均间隔（小时），无数据时为 null
+    private Double averageLeadTimeHours;
+    // 已完成的挂号中有病历的比例，无已完成挂号时为 null
+    private Double medicalRecordCoverage;
+}
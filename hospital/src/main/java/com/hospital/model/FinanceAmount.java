@@ -0,0 +1,19 @@
+package com.hospital.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class FinanceAmount {
+    // 维度取值：日期、科室 ID、医生 ID 或挂号类型；合计行为 null
+    private String key;
+    private String label;
+    private long registrations;
+    // 已支付
+    private BigDecimal revenue;
+    // 未支付且未取消
+    private BigDecimal outstanding;
+    // 已退款
+    private BigDecimal refunded;
+}
@@ -0,0 +1,17 @@
+package com.hospital.model;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class FinanceSummaryDto {
+    private LocalDate from;
+    private LocalDate to;
+    private FinanceAmount total;
+    private List<FinanceAmount> byDay;
+    private List<FinanceAmount> byDepartment;
+    private List<FinanceAmount> byDoctor;
+    private List<FinanceAmount> byType;
+}
@@ -1,10 +1,13 @@
 package com.hospital.model;
 
+import com.hospital.entity.Registration;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 
 @Data
+@NoArgsConstructor
 public class RecentRegistrationDto {
     private Long id;
     private String patientName;
@@ -13,4 +16,16 @@ public class RecentRegistrationDto {
     private String disease;
     private String status;
     private LocalDateTime appointmentTime;
+
+    // 供 JPQL 构造器表达式使用
+    public RecentRegistrationDto(Long id, String patientName, String doctorName, String department,
+                                 String disease, Registration.Status status, LocalDateTime appointmentTime) {
+        this.id = id;
+        this.patientName = patientName;
+        this.doctorName = doctorName;
+        this.department = department;
+        this.disease = disease;
+        this.status = status != null ? status.name() : "WAITING";
+        this.appointmentTime = appointmentTime;
+    }
 }
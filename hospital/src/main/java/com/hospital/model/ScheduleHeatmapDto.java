@@ -0,0 +1,29 @@
+package com.hospital.model;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 排班利用率热力图（科室 × 日期 × 时段）。
+ * 只返回有排班的格子，cells 为扁平整数数组，每 {@link #COLUMNS} 个元素描述一个格子，
+ * 前三列是 departments、dates、blocks 中的下标。
+ */
+@Data
+public class ScheduleHeatmapDto {
+
+    public static final List<String> COLUMNS = List.of(
+            "department", "date", "block", "capacity", "booked", "remaining", "utilizationPermille");
+
+    private LocalDate from;
+    private LocalDate to;
+    private int blockHours;
+    private List<String> columns = COLUMNS;
+    private List<Long> departmentIds;
+    private List<String> departments;
+    private List<LocalDate> dates;
+    // 各时段的起始时间，如 08:00
+    private List<String> blocks;
+    private int[] cells;
+}
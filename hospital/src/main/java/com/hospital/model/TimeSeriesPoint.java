@@ -0,0 +1,18 @@
+package com.hospital.model;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class TimeSeriesPoint {
+    // 桶的起始时间（小时 / 天 / 月的第一天零点）
+    private LocalDateTime bucket;
+    // 分组维度的取值（科室 ID、医生 ID 或枚举名），未分组时为 null
+    private String key;
+    // 科室名、医生名；枚举维度与 key 相同
+    private String label;
+    private long count;
+    private BigDecimal feeTotal;
+}
@@ -0,0 +1,19 @@
+package com.hospital.model;
+
+import com.hospital.entity.WaitlistEntry;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class WaitlistEntryDto {
+    private Long id;
+    private Long scheduleId;
+    private Long patientId;
+    private WaitlistEntry.Status status;
+    // 当前候补位置，1 表示下一个转正；已转正或已退出时为 0
+    private long position;
+    // 转正后自动创建的挂号
+    private Long registrationId;
+    private LocalDateTime createdAt;
+}
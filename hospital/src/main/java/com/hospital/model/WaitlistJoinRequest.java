@@ -0,0 +1,9 @@
+package com.hospital.model;
+
+import lombok.Data;
+
+@Data
+public class WaitlistJoinRequest {
+    private Long patientId;
+    private String notes;
+}
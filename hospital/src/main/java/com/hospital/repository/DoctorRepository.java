@@ -4,6 +4,8 @@ import com.hospital.entity.Doctor;
 import com.hospital.entity.Department;
 import com.hospital.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,4 +18,13 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     List<Doctor> findByDepartment(Department department);
     List<Doctor> findByDepartment_Name(String name);
     List<Doctor> findByNameContaining(String name);
+
+    // 按登录用户名一次性加载医生及其账号、科室，供当前用户解析使用
+    @Query("SELECT d FROM Doctor d JOIN FETCH d.user u LEFT JOIN FETCH d.department " +
+           "WHERE u.username = :username AND u.role = 'DOCTOR'")
+    Optional<Doctor> findByUsernameWithUser(@Param("username") String username);
+
+    // 仅取 ID、姓名与科室名，供统计报表解析名称
+    @Query("SELECT d.id, d.name, dep.name FROM Doctor d LEFT JOIN d.department dep")
+    List<Object[]> findIdNameAndDepartment();
 }
@@ -0,0 +1,62 @@
+package com.hospital.repository;
+
+import com.hospital.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // 主键冲突时不插入（已有请求在处理或已完成），返回 0
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO idempotency_record " +
+                   "(record_key, request_hash, status, created_at, updated_at, expires_at) " +
+                   "VALUES (:key, :hash, 'IN_PROGRESS', :now, :now, :expiresAt)", nativeQuery = true)
+    int insertIfAbsent(@Param("key") String key,
+                       @Param("hash") String hash,
+                       @Param("now") LocalDateTime now,
+                       @Param("expiresAt") LocalDateTime expiresAt);
+
+    // 接管已过期的记录，或处理节点宕机后遗留的处理中记录
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.requestHash = :hash, r.status = :inProgress, " +
+           "r.responseStatus = NULL, r.contentType = NULL, r.responseBody = NULL, " +
+           "r.createdAt = :now, r.updatedAt = :now, r.expiresAt = :expiresAt " +
+           "WHERE r.recordKey = :key AND (r.expiresAt < :now OR (r.status = :inProgress AND r.updatedAt < :staleBefore))")
+    int takeOver(@Param("key") String key,
+                 @Param("hash") String hash,
+                 @Param("inProgress") IdempotencyRecord.Status inProgress,
+                 @Param("now") LocalDateTime now,
+                 @Param("staleBefore") LocalDateTime staleBefore,
+                 @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.status = :completed, r.responseStatus = :responseStatus, " +
+           "r.contentType = :contentType, r.responseBody = :body, r.updatedAt = :now WHERE r.recordKey = :key")
+    int complete(@Param("key") String key,
+                 @Param("completed") IdempotencyRecord.Status completed,
+                 @Param("responseStatus") int responseStatus,
+                 @Param("contentType") String contentType,
+                 @Param("body") String body,
+                 @Param("now") LocalDateTime now);
+
+    // 请求执行失败时删除处理中记录，允许客户端重试
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = :key AND r.status = :inProgress")
+    int release(@Param("key") String key, @Param("inProgress") IdempotencyRecord.Status inProgress);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :time")
+    int deleteExpired(@Param("time") LocalDateTime time);
+}
@@ -0,0 +1,63 @@
+package com.hospital.repository;
+
+import com.hospital.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO job_checkpoint (job_name, updated_at) VALUES (:jobName, :now)", nativeQuery = true)
+    int createIfAbsent(@Param("jobName") String jobName, @Param("now") LocalDateTime now);
+
+    // 租约未过期时返回 0，说明其他节点正在执行
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobCheckpoint j SET j.lockedUntil = :lockedUntil, j.updatedAt = :now " +
+           "WHERE j.jobName = :jobName AND (j.lockedUntil IS NULL OR j.lockedUntil < :now)")
+    int tryLock(@Param("jobName") String jobName,
+                @Param("now") LocalDateTime now,
+                @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobCheckpoint j SET j.watermark = :watermark, j.lockedUntil = NULL, j.updatedAt = :now " +
+           "WHERE j.jobName = :jobName")
+    int completeRun(@Param("jobName") String jobName,
+                    @Param("watermark") LocalDateTime watermark,
+                    @Param("now") LocalDateTime now);
+
+    // 直接设置水位与到期时间（栅栏），不检查当前租约
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobCheckpoint j SET j.watermark = :watermark, j.lockedUntil = :lockedUntil, j.updatedAt = :now " +
+           "WHERE j.jobName = :jobName")
+    int arm(@Param("jobName") String jobName,
+            @Param("watermark") LocalDateTime watermark,
+            @Param("lockedUntil") LocalDateTime lockedUntil,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobCheckpoint j SET j.updatedAt = :now WHERE j.jobName = :jobName")
+    int touch(@Param("jobName") String jobName, @Param("now") LocalDateTime now);
+
+    List<JobCheckpoint> findByJobNameStartingWithAndUpdatedAtGreaterThanEqual(String prefix, LocalDateTime since);
+
+    @Transactional
+    long deleteByJobNameStartingWithAndUpdatedAtBefore(String prefix, LocalDateTime before);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE JobCheckpoint j SET j.lockedUntil = NULL, j.updatedAt = :now WHERE j.jobName = :jobName")
+    int release(@Param("jobName") String jobName, @Param("now") LocalDateTime now);
+}
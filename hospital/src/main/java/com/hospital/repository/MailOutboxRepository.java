@@ -0,0 +1,65 @@
+package com.hospital.repository;
+
+import com.hospital.entity.MailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    long countByStatus(MailOutbox.Status status);
+
+    @Query("SELECT m.id FROM MailOutbox m WHERE m.status = 'PENDING' AND m.nextAttemptAt <= :now ORDER BY m.nextAttemptAt")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // 条件更新认领待发送邮件，多节点同时轮询时每封邮件只会被一个节点认领
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox m SET m.status = 'SENDING', m.claimedAt = :now " +
+           "WHERE m.id = :id AND m.status = 'PENDING'")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox m SET m.status = 'SENT', m.sentAt = :now, m.attempts = m.attempts + 1, m.lastError = null " +
+           "WHERE m.id IN :ids")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    // 含验证码等时效内容的邮件发出后清除正文
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox m SET m.body = :placeholder WHERE m.id IN :ids AND m.expiresAt IS NOT NULL")
+    int redactExpiring(@Param("ids") Collection<Long> ids, @Param("placeholder") String placeholder);
+
+    // 过期仍未发出的邮件不再发送，同时清除正文
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox m SET m.status = 'EXPIRED', m.body = :placeholder " +
+           "WHERE m.status = 'PENDING' AND m.expiresAt <= :now")
+    int expirePending(@Param("now") LocalDateTime now, @Param("placeholder") String placeholder);
+
+    // 节点在发送过程中宕机时，认领超时的邮件重新回到待发送状态
+    @Modifying
+    @Transactional
+    @Query("UPDATE MailOutbox m SET m.status = 'PENDING' WHERE m.status = 'SENDING' AND m.claimedAt < :claimedBefore")
+    int reclaimStale(@Param("claimedBefore") LocalDateTime claimedBefore);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MailOutbox m WHERE m.status = 'SENT' AND m.sentAt < :sentBefore")
+    int deleteSentBefore(@Param("sentBefore") LocalDateTime sentBefore);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MailOutbox m WHERE m.status = 'EXPIRED' AND m.expiresAt < :expiredBefore")
+    int deleteExpiredBefore(@Param("expiredBefore") LocalDateTime expiredBefore);
+}
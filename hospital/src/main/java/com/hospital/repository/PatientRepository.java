@@ -3,6 +3,8 @@ package com.hospital.repository;
 import com.hospital.entity.Patient;
 import com.hospital.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -14,4 +16,12 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
     Optional<Patient> findByUserId(Long userId);
     Optional<Patient> findByIdCard(String idCard);
     List<Patient> findByNameContaining(String name);
+
+    // 按登录用户名一次性加载患者及其账号，供当前用户解析使用
+    @Query("SELECT p FROM Patient p JOIN FETCH p.user u WHERE u.username = :username AND u.role = 'PATIENT'")
+    Optional<Patient> findByUsernameWithUser(@Param("username") String username);
+
+    // 锁定患者行（SELECT ... FOR UPDATE），同一患者的挂号冲突检测与写入跨节点串行执行
+    @Query(value = "SELECT id FROM patient WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockForBooking(@Param("id") Long id);
 }
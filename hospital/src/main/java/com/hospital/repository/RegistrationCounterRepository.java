@@ -0,0 +1,33 @@
+package com.hospital.repository;
+
+import com.hospital.entity.RegistrationCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RegistrationCounterRepository extends JpaRepository<RegistrationCounter, String> {
+
+    List<RegistrationCounter> findByUpdatedAtGreaterThanEqual(LocalDateTime time);
+
+    // 累加增量，多个节点各自写入自己的增量，互不覆盖
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO registration_counter (counter_key, counter_value, updated_at) VALUES (:key, :delta, :now) " +
+                   "ON DUPLICATE KEY UPDATE counter_value = counter_value + :delta, updated_at = :now",
+            nativeQuery = true)
+    int addDelta(@Param("key") String key, @Param("delta") long delta, @Param("now") LocalDateTime now);
+
+    // 重建时写入绝对值，已存在的计数（其他节点先重建完成）保持不变
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO registration_counter (counter_key, counter_value, updated_at) VALUES (:key, :value, :now)",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("key") String key, @Param("value") long value, @Param("now") LocalDateTime now);
+}
@@ -2,13 +2,19 @@ package com.hospital.repository;
 
 import com.hospital.entity.Patient;
 import com.hospital.entity.Registration;
+import com.hospital.model.RecentRegistrationDto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface RegistrationRepository extends JpaRepository<Registration, Long> {
@@ -20,12 +26,94 @@ public interface RegistrationRepository extends JpaRepository<Registration, Long
     List<Registration> findByPatientAndStatus(Patient patient, Registration.Status status);
     List<Registration> findByAppointmentTimeBetween(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT r FROM Registration r WHERE r.patient.id = :patientId " +
-            "AND r.status != 'CANCELLED' " +
-            "AND r.appointmentTime BETWEEN :startTime AND :endTime")
-    List<Registration> findConflictingRegistrations(
+    // 患者在时间窗内是否已有有效挂号，只返回任意一条的 id（没有则为 null），走 (patient_id, appointment_time) 索引；
+    // FOR SHARE 读取已提交的最新数据并锁住扫描到的索引区间，避免可重复读快照看不到并发提交的挂号
+    @Query(value = "SELECT id FROM registration WHERE patient_id = :patientId AND status <> 'CANCELLED' " +
+            "AND appointment_time BETWEEN :startTime AND :endTime AND id <> :excludeId LIMIT 1 FOR SHARE",
+            nativeQuery = true)
+    Long findConflictingRegistrationId(
             @Param("patientId") Long patientId,
             @Param("startTime") LocalDateTime startTime,
-            @Param("endTime") LocalDateTime endTime
+            @Param("endTime") LocalDateTime endTime,
+            @Param("excludeId") Long excludeId
     );
-}
\ No newline at end of file
+
+    // ================== 管理端统计（聚合查询，不加载实体） ==================
+
+    @Query("SELECT COUNT(r) FROM Registration r WHERE r.appointmentTime >= :start AND r.appointmentTime < :end")
+    long countByAppointmentTimeInRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // 科室优先取病种所属科室，其次取医生所属科室；两者都没有时科室名为 null
+    @Query("SELECT COALESCE(dd.name, docd.name), COUNT(r) FROM Registration r " +
+            "LEFT JOIN r.disease d LEFT JOIN d.department dd " +
+            "LEFT JOIN r.doctor doc LEFT JOIN doc.department docd " +
+            "GROUP BY COALESCE(dd.name, docd.name)")
+    List<Object[]> countGroupByDepartment();
+
+    @Query("SELECT new com.hospital.model.RecentRegistrationDto(r.id, p.name, doc.name, docd.name, d.name, r.status, r.appointmentTime) " +
+            "FROM Registration r LEFT JOIN r.patient p LEFT JOIN r.doctor doc LEFT JOIN doc.department docd " +
+            "LEFT JOIN r.disease d ORDER BY r.registrationTime DESC")
+    List<RecentRegistrationDto> findRecent(Pageable pageable);
+
+    // ================== 计数器重建（仅在计数表为空时执行一次） ==================
+
+    @Query("SELECT YEAR(r.appointmentTime), MONTH(r.appointmentTime), DAY(r.appointmentTime), COUNT(r) " +
+            "FROM Registration r " +
+            "GROUP BY YEAR(r.appointmentTime), MONTH(r.appointmentTime), DAY(r.appointmentTime)")
+    List<Object[]> countGroupByAppointmentDay();
+
+    @Query("SELECT COALESCE(dd.id, docd.id), COUNT(r) FROM Registration r " +
+            "LEFT JOIN r.disease d LEFT JOIN d.department dd " +
+            "LEFT JOIN r.doctor doc LEFT JOIN doc.department docd " +
+            "GROUP BY COALESCE(dd.id, docd.id)")
+    List<Object[]> countGroupByDepartmentId();
+
+    @Query("SELECT r.status, COUNT(r) FROM Registration r GROUP BY r.status")
+    List<Object[]> countGroupByStatus();
+
+    // ================== 汇总任务 ==================
+
+    // 自水位以来有变化的挂号所在的日期（按挂号时间），updatedAt 为空的历史数据在首次全量汇总时处理
+    @Query("SELECT DISTINCT YEAR(r.registrationTime), MONTH(r.registrationTime), DAY(r.registrationTime) " +
+            "FROM Registration r WHERE r.updatedAt >= :since AND r.registrationTime IS NOT NULL")
+    List<Object[]> findRegistrationDaysUpdatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT DISTINCT YEAR(r.registrationTime), MONTH(r.registrationTime), DAY(r.registrationTime) " +
+            "FROM Registration r WHERE r.registrationTime IS NOT NULL")
+    List<Object[]> findAllRegistrationDays();
+
+    @Query("SELECT HOUR(r.registrationTime), COALESCE(dd.id, docd.id), doc.id, r.type, r.channel, r.status, " +
+            "r.paymentStatus, COUNT(r), SUM(r.fee) FROM Registration r " +
+            "LEFT JOIN r.disease d LEFT JOIN d.department dd " +
+            "LEFT JOIN r.doctor doc LEFT JOIN doc.department docd " +
+            "WHERE r.registrationTime >= :start AND r.registrationTime < :end " +
+            "GROUP BY HOUR(r.registrationTime), COALESCE(dd.id, docd.id), doc.id, r.type, r.channel, r.status, r.paymentStatus")
+    List<Object[]> rollupByHour(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // ================== 医生工作量分析（流式读取标量列） ==================
+
+    // fetch size 取 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不在内存中缓存整个结果集；调用方需在只读事务内消费并关闭流
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT r.doctor.id, r.status, r.registrationTime, r.appointmentTime, " +
+            "CASE WHEN EXISTS (SELECT 1 FROM MedicalRecord m WHERE m.registration = r) THEN true ELSE false END " +
+            "FROM Registration r WHERE r.appointmentTime >= :start AND r.appointmentTime < :end")
+    Stream<Object[]> streamWorkloadRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // ================== 费用汇总 ==================
+
+    // 按挂号日期、科室、医生、类型、支付状态、挂号状态分组求和，返回行数只与维度组合数有关
+    @Query("SELECT YEAR(r.registrationTime), MONTH(r.registrationTime), DAY(r.registrationTime), " +
+            "COALESCE(dd.id, docd.id), doc.id, r.type, r.paymentStatus, r.status, COUNT(r), SUM(r.fee) " +
+            "FROM Registration r LEFT JOIN r.disease d LEFT JOIN d.department dd " +
+            "LEFT JOIN r.doctor doc LEFT JOIN doc.department docd " +
+            "WHERE r.registrationTime >= :start AND r.registrationTime < :end " +
+            "GROUP BY YEAR(r.registrationTime), MONTH(r.registrationTime), DAY(r.registrationTime), " +
+            "COALESCE(dd.id, docd.id), doc.id, r.type, r.paymentStatus, r.status")
+    List<Object[]> sumFeesByDimension(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // ================== 号源占用 ==================
+
+    // 读取并锁定挂号当前状态（SELECT ... FOR UPDATE），直接读库而不是持久化上下文中可能过期的实体
+    @Query(value = "SELECT status FROM registration WHERE id = :id FOR UPDATE", nativeQuery = true)
+    String lockStatus(@Param("id") Long id);
+}
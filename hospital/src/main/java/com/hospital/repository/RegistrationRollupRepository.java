@@ -0,0 +1,18 @@
+package com.hospital.repository;
+
+import com.hospital.entity.RegistrationRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RegistrationRollupRepository extends JpaRepository<RegistrationRollup, Long> {
+
+    @Modifying
+    @Query("DELETE FROM RegistrationRollup x WHERE x.bucketStart >= :start AND x.bucketStart < :end")
+    int deleteBucketsInRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
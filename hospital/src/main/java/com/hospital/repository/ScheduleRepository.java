@@ -4,11 +4,15 @@ import com.hospital.entity.Department;
 import com.hospital.entity.Doctor;
 import com.hospital.entity.Schedule;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,4 +31,84 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Long> {
     
     @Query("SELECT s FROM Schedule s JOIN FETCH s.doctor JOIN FETCH s.department WHERE s.workDate = :workDate")
     List<Schedule> findByWorkDateWithDetails(@Param("workDate") LocalDate workDate);
+
+    // 利用率热力图：按科室、日期、开始小时汇总容量与已预约数，只返回标量列
+    @Query("SELECT d.id, d.name, s.workDate, HOUR(s.startTime), SUM(s.capacity), SUM(s.booked) " +
+            "FROM Schedule s JOIN s.department d " +
+            "WHERE s.workDate BETWEEN :from AND :to AND s.status <> :excluded " +
+            "GROUP BY d.id, d.name, s.workDate, HOUR(s.startTime)")
+    List<Object[]> sumCapacityByDepartmentDateAndHour(@Param("from") LocalDate from,
+                                                      @Param("to") LocalDate to,
+                                                      @Param("excluded") Schedule.ScheduleStatus excluded);
+
+    // ================== 号源占用 ==================
+
+    // 原子占用一个号源：只有开放且未满的排班才会更新，返回 0 表示已满或未开放；
+    // 状态列放在前面赋值，MySQL 按顺序求值，此时 booked 仍是更新前的值
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Schedule s SET s.status = CASE WHEN s.booked + 1 >= s.capacity THEN :full ELSE s.status END, " +
+           "s.booked = s.booked + 1, s.updatedAt = :now " +
+           "WHERE s.id = :id AND s.booked < s.capacity AND s.status = :open")
+    int reserveSlot(@Param("id") Long id,
+                    @Param("open") Schedule.ScheduleStatus open,
+                    @Param("full") Schedule.ScheduleStatus full,
+                    @Param("now") LocalDateTime now);
+
+    // 释放一个号源，已满的排班恢复为开放（暂停、进行中的状态保持不变）
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Schedule s SET s.status = CASE WHEN s.status = :full THEN :open ELSE s.status END, " +
+           "s.booked = s.booked - 1, s.updatedAt = :now " +
+           "WHERE s.id = :id AND s.booked > 0")
+    int releaseSlot(@Param("id") Long id,
+                    @Param("open") Schedule.ScheduleStatus open,
+                    @Param("full") Schedule.ScheduleStatus full,
+                    @Param("now") LocalDateTime now);
+
+    // 挂号指定了排班时，校验该排班属于该医生且覆盖预约时间
+    @Query("SELECT COUNT(s) > 0 FROM Schedule s WHERE s.id = :id AND s.doctor.id = :doctorId AND s.workDate = :workDate " +
+           "AND s.startTime <= :time AND s.endTime > :time")
+    boolean covers(@Param("id") Long id,
+                   @Param("doctorId") Long doctorId,
+                   @Param("workDate") LocalDate workDate,
+                   @Param("time") LocalTime time);
+
+    // 挂号未指定排班时，按医生与预约时间查找覆盖该时间的排班
+    @Query("SELECT s.id FROM Schedule s WHERE s.doctor.id = :doctorId AND s.workDate = :workDate " +
+           "AND s.startTime <= :time AND s.endTime > :time ORDER BY s.startTime")
+    List<Long> findCoveringScheduleIds(@Param("doctorId") Long doctorId,
+                                       @Param("workDate") LocalDate workDate,
+                                       @Param("time") LocalTime time);
+
+    // ================== 内存号源库存 ==================
+
+    // 加载库存时读取并锁定排班；有未提交的号源更新时立即失败而不是等待
+    @Query(value = "SELECT capacity, booked, status FROM schedule WHERE id = :id FOR UPDATE NOWAIT", nativeQuery = true)
+    List<Object[]> lockCapacityStateNowait(@Param("id") Long id);
+
+    // 合并写回内存中累计的占用增量（可为负），并按结果切换已满 / 开放状态
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.status = CASE " +
+           "WHEN s.status = :open AND s.booked + :delta >= s.capacity THEN :full " +
+           "WHEN s.status = :full AND s.booked + :delta < s.capacity THEN :open " +
+           "ELSE s.status END, " +
+           "s.booked = s.booked + :delta, s.updatedAt = :now WHERE s.id = :id")
+    int addBooked(@Param("id") Long id,
+                  @Param("delta") int delta,
+                  @Param("open") Schedule.ScheduleStatus open,
+                  @Param("full") Schedule.ScheduleStatus full,
+                  @Param("now") LocalDateTime now);
+
+    // 启动对账：写回前宕机会使 booked 少于实际有效挂号数，这里只补齐偏少的部分，
+    // 不下调 booked（历史数据与线下挂号可能没有关联排班）
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE schedule s JOIN (" +
+            "SELECT schedule_id, COUNT(*) AS active FROM registration " +
+            "WHERE schedule_id IS NOT NULL AND status <> 'CANCELLED' GROUP BY schedule_id) r " +
+            "ON r.schedule_id = s.id " +
+            "SET s.status = CASE WHEN s.status = 'OPEN' AND r.active >= s.capacity THEN 'FULL' ELSE s.status END, " +
+            "s.booked = r.active, s.updated_at = :now " +
+            "WHERE s.booked < r.active AND s.work_date >= :since", nativeQuery = true)
+    int raiseBookedToActiveRegistrations(@Param("since") LocalDate since, @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,51 @@
+package com.hospital.repository;
+
+import com.hospital.entity.VerificationCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface VerificationCodeRepository extends JpaRepository<VerificationCode, String> {
+
+    // 仅删除已过重发间隔的旧验证码，为新验证码腾出位置
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM VerificationCode v WHERE v.codeKey = :key AND v.sentAt <= :sentBefore")
+    int deleteResendable(@Param("key") String key, @Param("sentBefore") LocalDateTime sentBefore);
+
+    // 主键冲突时不插入（其他节点刚刚发送过），返回 0
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO verification_code (code_key, code, expire_at, sent_at, attempts) " +
+                   "VALUES (:key, :code, :expireAt, :sentAt, 0)", nativeQuery = true)
+    int insertIfAbsent(@Param("key") String key,
+                       @Param("code") String code,
+                       @Param("expireAt") LocalDateTime expireAt,
+                       @Param("sentAt") LocalDateTime sentAt);
+
+    // 先占用一次尝试次数再比对，并发猜测也无法超过上限
+    @Modifying
+    @Transactional
+    @Query("UPDATE VerificationCode v SET v.attempts = v.attempts + 1 " +
+           "WHERE v.codeKey = :key AND v.attempts < :maxAttempts AND v.expireAt >= :now")
+    int incrementAttempts(@Param("key") String key,
+                          @Param("maxAttempts") int maxAttempts,
+                          @Param("now") LocalDateTime now);
+
+    // 校验通过后消费验证码，只有一个请求能删除成功
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM VerificationCode v WHERE v.codeKey = :key AND v.code = :code")
+    int consume(@Param("key") String key, @Param("code") String code);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM VerificationCode v WHERE v.expireAt < :time")
+    int deleteExpired(@Param("time") LocalDateTime time);
+}
@@ -0,0 +1,46 @@
+package com.hospital.repository;
+
+import com.hospital.entity.WaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+
+    boolean existsByScheduleIdAndPatientIdAndStatus(Long scheduleId, Long patientId, WaitlistEntry.Status status);
+
+    // 排班的候补队列（id, patient_id），按加入顺序，用于加载内存队列
+    @Query("SELECT w.id, w.patient.id FROM WaitlistEntry w " +
+           "WHERE w.schedule.id = :scheduleId AND w.status = :status ORDER BY w.id")
+    List<Object[]> findQueue(@Param("scheduleId") Long scheduleId, @Param("status") WaitlistEntry.Status status);
+
+    // 排在该候补之前仍在等待的人数
+    @Query("SELECT COUNT(w) FROM WaitlistEntry w " +
+           "WHERE w.schedule.id = :scheduleId AND w.status = :status AND w.id < :id")
+    long countAhead(@Param("scheduleId") Long scheduleId,
+                    @Param("status") WaitlistEntry.Status status,
+                    @Param("id") Long id);
+
+    // 条件切换状态，只有一个并发请求能成功（返回 1），其余返回 0
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.status = :to, w.updatedAt = :now WHERE w.id = :id AND w.status = :from")
+    int transition(@Param("id") Long id,
+                   @Param("from") WaitlistEntry.Status from,
+                   @Param("to") WaitlistEntry.Status to,
+                   @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WaitlistEntry w SET w.registrationId = :registrationId, w.updatedAt = :now WHERE w.id = :id")
+    int attachRegistration(@Param("id") Long id,
+                           @Param("registrationId") Long registrationId,
+                           @Param("now") LocalDateTime now);
+}
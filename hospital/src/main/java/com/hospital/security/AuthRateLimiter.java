@@ -0,0 +1,93 @@
+package com.hospital.security;
+
+import com.hospital.exception.TooManyRequestsException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * 登录与找回密码接口的防暴力破解限流。
+ * 分别按用户名和客户端 IP 计数，在查询用户、校验密码或发送邮件之前执行，
+ * 使攻击者无法无限制地消耗 BCrypt 运算和 SMTP 调用。
+ * 客户端 IP 取 request.getRemoteAddr()：部署在反向代理之后时由 Tomcat RemoteIpValve
+ * 按 server.tomcat.remoteip.internal-proxies 采信 X-Forwarded-For 还原，不会所有人共用代理的 IP。
+ */
+@Component
+public class AuthRateLimiter {
+
+    @Value("${security.rate-limit.login.per-user.capacity:5}")
+    private int loginUserCapacity;
+
+    @Value("${security.rate-limit.login.per-user.refill-per-minute:5}")
+    private int loginUserRefill;
+
+    @Value("${security.rate-limit.login.per-ip.capacity:30}")
+    private int loginIpCapacity;
+
+    @Value("${security.rate-limit.login.per-ip.refill-per-minute:30}")
+    private int loginIpRefill;
+
+    @Value("${security.rate-limit.password-reset.per-user.capacity:3}")
+    private int resetUserCapacity;
+
+    @Value("${security.rate-limit.password-reset.per-user.refill-per-minute:1}")
+    private int resetUserRefill;
+
+    @Value("${security.rate-limit.password-reset.per-ip.capacity:10}")
+    private int resetIpCapacity;
+
+    @Value("${security.rate-limit.password-reset.per-ip.refill-per-minute:5}")
+    private int resetIpRefill;
+
+    @Value("${security.rate-limit.max-keys:100000}")
+    private int maxKeys;
+
+    @Value("${security.rate-limit.idle-timeout:15m}")
+    private Duration idleTimeout;
+
+    private TokenBucketRateLimiter loginByUser;
+    private TokenBucketRateLimiter loginByIp;
+    private TokenBucketRateLimiter resetByUser;
+    private TokenBucketRateLimiter resetByIp;
+
+    @PostConstruct
+    void init() {
+        loginByUser = new TokenBucketRateLimiter(loginUserCapacity, loginUserRefill, maxKeys, idleTimeout);
+        loginByIp = new TokenBucketRateLimiter(loginIpCapacity, loginIpRefill, maxKeys, idleTimeout);
+        resetByUser = new TokenBucketRateLimiter(resetUserCapacity, resetUserRefill, maxKeys, idleTimeout);
+        resetByIp = new TokenBucketRateLimiter(resetIpCapacity, resetIpRefill, maxKeys, idleTimeout);
+    }
+
+    public void checkLogin(String username, String clientIp) {
+        check(loginByIp, clientIp, "登录尝试过于频繁，请稍后再试");
+        check(loginByUser, normalize(username), "登录尝试过于频繁，请稍后再试");
+    }
+
+    public void checkPasswordReset(String username, String clientIp) {
+        check(resetByIp, clientIp, "操作过于频繁，请稍后再试");
+        check(resetByUser, normalize(username), "操作过于频繁，请稍后再试");
+    }
+
+    @Scheduled(fixedDelayString = "${security.rate-limit.sweep-interval:60000}")
+    public void evictIdleBuckets() {
+        loginByUser.evictIdle();
+        loginByIp.evictIdle();
+        resetByUser.evictIdle();
+        resetByIp.evictIdle();
+    }
+
+    private void check(TokenBucketRateLimiter limiter, String key, String message) {
+        if (key != null && !limiter.tryAcquire(key)) {
+            throw new TooManyRequestsException(message);
+        }
+    }
+
+    private String normalize(String username) {
+        return StringUtils.hasText(username) ? username.trim().toLowerCase(Locale.ROOT) : null;
+    }
+}
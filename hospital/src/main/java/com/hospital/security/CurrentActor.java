@@ -0,0 +1,18 @@
+package com.hospital.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注在控制器方法参数上，注入当前登录用户对应的实体。
+ * 支持的参数类型：{@link com.hospital.entity.Doctor}、{@link com.hospital.entity.Patient}、
+ * {@link com.hospital.entity.User}；未登录或当前用户不是该类型时注入 null。
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentActor {
+}
@@ -0,0 +1,89 @@
+package com.hospital.security;
+
+import com.hospital.entity.Doctor;
+import com.hospital.entity.Patient;
+import com.hospital.entity.User;
+import com.hospital.repository.DoctorRepository;
+import com.hospital.repository.PatientRepository;
+import com.hospital.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.util.Optional;
+
+/**
+ * 解析 {@link CurrentActor} 参数。
+ * 每种类型只用一条关联查询按用户名加载，结果缓存在请求属性中，同一请求内不再重复查询。
+ */
+@Component
+public class CurrentActorArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String ATTRIBUTE_PREFIX = CurrentActorArgumentResolver.class.getName() + ".";
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        if (!parameter.hasParameterAnnotation(CurrentActor.class)) {
+            return false;
+        }
+        Class<?> type = parameter.getParameterType();
+        return type == Doctor.class || type == Patient.class || type == User.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter,
+                                  ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest,
+                                  WebDataBinderFactory binderFactory) {
+        String username = currentUsername();
+        if (username == null) {
+            return null;
+        }
+        Class<?> type = parameter.getParameterType();
+        String attribute = ATTRIBUTE_PREFIX + type.getSimpleName();
+
+        Object memoized = webRequest.getAttribute(attribute, RequestAttributes.SCOPE_REQUEST);
+        if (memoized instanceof Optional<?> actor) {
+            return actor.orElse(null);
+        }
+        Optional<?> actor = load(type, username);
+        webRequest.setAttribute(attribute, actor, RequestAttributes.SCOPE_REQUEST);
+        return actor.orElse(null);
+    }
+
+    private Optional<?> load(Class<?> type, String username) {
+        if (type == Doctor.class) {
+            return doctorRepository.findByUsernameWithUser(username);
+        }
+        if (type == Patient.class) {
+            return patientRepository.findByUsernameWithUser(username);
+        }
+        return userRepository.findByUsername(username);
+    }
+
+    private String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -2,13 +2,17 @@ package com.hospital.security;
 
 import com.hospital.entity.User;
 import com.hospital.repository.UserRepository;
+import com.hospital.util.BoundedTtlCache;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -19,10 +23,48 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Value("${security.user-cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${security.user-cache.ttl:5m}")
+    private Duration cacheTtl;
+
+    private BoundedTtlCache<String, UserDetails> cache;
+
+    @PostConstruct
+    void init() {
+        this.cache = new BoundedTtlCache<>("userDetails", cacheMaxSize, cacheTtl);
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserDetails cached = cache.get(username, this::loadFromDatabase);
+        if (cached == null) {
+            throw new UsernameNotFoundException("User not found with username: " + username);
+        }
+        // 认证成功后 Spring Security 会擦除凭证，返回副本以免缓存中的密码被置空
+        return org.springframework.security.core.userdetails.User.withUserDetails(cached).build();
+    }
+
+    /**
+     * 用户信息（用户名、密码、角色、状态）变化或删除后调用。
+     */
+    public void evictUser(String username) {
+        if (username != null) {
+            cache.invalidate(username);
+        }
+    }
+
+    public BoundedTtlCache.CacheStats cacheStats() {
+        return cache.stats();
+    }
+
+    private UserDetails loadFromDatabase(String username) {
         Optional<User> userOptional = userRepository.findByUsername(username);
-        User user = userOptional.orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+        if (userOptional.isEmpty()) {
+            return null;
+        }
+        User user = userOptional.get();
 
         // 将用户角色转换为Spring Security的GrantedAuthority
         List<SimpleGrantedAuthority> authorities = Collections.singletonList(
@@ -1,11 +1,12 @@
 package com.hospital.security;
 
 import com.hospital.util.JwtTokenUtil;
+import com.hospital.util.VerifiedToken;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.security.SignatureException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -31,6 +33,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtTokenUtil jwtTokenUtil;
 
+    @Autowired
+    private UserSecurityVersionRegistry securityVersionRegistry;
+
+    @Autowired
+    private TokenRevocationService revocationService;
+
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         String path = request.getServletPath();
@@ -45,12 +53,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
-        String jwtToken = resolveToken(request);
-        String username = null;
+        String jwtToken = jwtTokenUtil.resolveToken(request);
+        VerifiedToken verifiedToken = null;
 
         if (jwtToken != null && !jwtToken.isBlank()) {
             try {
-                username = jwtTokenUtil.getUsernameFromToken(jwtToken);
+                // 令牌只解析、验签一次，后续校验复用同一结果
+                verifiedToken = jwtTokenUtil.verify(jwtToken);
             } catch (IllegalArgumentException e) {
                 logger.error("Unable to get JWT Token", e);
                 writeUnauthorized(response, 4003, "无效的令牌");
@@ -67,13 +76,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 logger.error("JWT Token signature verification failed", e);
                 writeUnauthorized(response, 4005, "令牌签名验证失败");
                 return;
+            } catch (JwtException e) {
+                logger.error("Unsupported JWT Token", e);
+                writeUnauthorized(response, 4003, "无效的令牌");
+                return;
             }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (verifiedToken != null && revocationService.isRevoked(verifiedToken.tokenId())) {
+            writeUnauthorized(response, 4003, "令牌已注销，请重新登录");
+            return;
+        }
+
+        if (verifiedToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails;
+            if (jwtTokenUtil.isStatelessPrincipal() && verifiedToken.hasPrincipalClaims()) {
+                // 无状态模式：直接由令牌声明构建用户，仅做一次（通常命中缓存的）安全版本校验
+                if (!securityVersionRegistry.isCurrent(verifiedToken.userId(), verifiedToken.securityVersion())) {
+                    writeUnauthorized(response, 4003, "令牌已失效，请重新登录");
+                    return;
+                }
+                userDetails = User.withUsername(verifiedToken.username())
+                        .password("")
+                        .authorities("ROLE_" + verifiedToken.role())
+                        .build();
+            } else {
+                userDetails = this.userDetailsService.loadUserByUsername(verifiedToken.username());
+            }
 
-            if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+            if (jwtTokenUtil.validateToken(verifiedToken, userDetails)) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 usernamePasswordAuthenticationToken
@@ -84,26 +115,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         chain.doFilter(request, response);
     }
 
-    private String resolveToken(HttpServletRequest request) {
-        final String requestTokenHeader = request.getHeader("Authorization");
-        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            return requestTokenHeader.substring(7);
-        }
-        Cookie[] cookies = request.getCookies();
-        if (cookies != null) {
-            for (Cookie cookie : cookies) {
-                if (JwtTokenUtil.AUTH_COOKIE_NAME.equals(cookie.getName())) {
-                    String token = cookie.getValue();
-                    if (token == null || token.isBlank()) {
-                        return null;
-                    }
-                    return token;
-                }
-            }
-        }
-        return null;
-    }
-
     private void writeUnauthorized(HttpServletResponse response, int code, String msg) throws IOException {
         response.setContentType("application/json;charset=UTF-8");
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -0,0 +1,181 @@
+package com.hospital.security;
+
+import com.hospital.entity.RevokedToken;
+import com.hospital.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 已注销令牌（按 jti）登记表。
+ * 每个请求都要判断令牌是否已注销，绝大多数令牌从未注销过：
+ * 先查布隆过滤器，未命中即可确定未注销（只做几次位运算）；命中时再查精确集合。
+ * 精确集合中的条目在令牌自然过期后清理，同时重建布隆过滤器以去掉旧位。
+ * 开启持久化后注销记录写入 revoked_token 表，重启后恢复，并定期同步其他节点的注销。
+ */
+@Component
+public class TokenRevocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${jwt.revocation.expected-entries:100000}")
+    private int expectedEntries;
+
+    @Value("${jwt.revocation.persistent:false}")
+    private boolean persistent;
+
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloomFilter;
+
+    private LocalDateTime lastSyncAt;
+
+    @PostConstruct
+    void init() {
+        bloomFilter = new BloomFilter(expectedEntries);
+        if (persistent) {
+            LocalDateTime now = LocalDateTime.now();
+            revokedTokenRepository.findByExpiresAtAfter(now).forEach(this::remember);
+            lastSyncAt = now;
+            log.info("Loaded {} revoked tokens", revoked.size());
+        }
+    }
+
+    /**
+     * 令牌是否已被注销。未携带 jti 的旧令牌无法注销，始终返回 false。
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !bloomFilter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public synchronized void revoke(String jti, Instant expiration) {
+        if (jti == null || expiration == null || expiration.toEpochMilli() <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.put(jti, expiration.toEpochMilli());
+        bloomFilter.add(jti);
+        if (persistent) {
+            RevokedToken token = new RevokedToken();
+            token.setJti(jti);
+            token.setExpiresAt(LocalDateTime.ofInstant(expiration, ZoneId.systemDefault()));
+            revokedTokenRepository.save(token);
+        }
+    }
+
+    /**
+     * 清理已过期条目并重建布隆过滤器；持久化模式下顺带拉取其他节点新增的注销记录。
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:60000}")
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        if (persistent) {
+            LocalDateTime syncPoint = LocalDateTime.now();
+            LocalDateTime nowTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault());
+            revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(lastSyncAt.minusSeconds(5), nowTime)
+                    .forEach(this::remember);
+            revokedTokenRepository.deleteExpired(nowTime);
+            lastSyncAt = syncPoint;
+        }
+
+        int before = revoked.size();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        if (revoked.size() != before) {
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2));
+            revoked.keySet().forEach(rebuilt::add);
+            bloomFilter = rebuilt;
+        }
+    }
+
+    private void remember(RevokedToken token) {
+        long expiresAt = token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        revoked.put(token.getJti(), expiresAt);
+        bloomFilter.add(token.getJti());
+    }
+
+    /**
+     * 线程安全的布隆过滤器，误判率约 1%，只增不删（删除通过整体重建实现）。
+     */
+    static final class BloomFilter {
+        private static final int HASH_COUNT = 7;
+
+        private final AtomicLongArray words;
+        private final long bitMask;
+
+        BloomFilter(int expectedEntries) {
+            // 约 10 bit/条目 + 7 个哈希函数 => 误判率约 1%，位数取 2 的幂便于取模
+            long bits = Long.highestOneBit(Math.max(1024L, expectedEntries * 10L) - 1) << 1;
+            this.words = new AtomicLongArray((int) (bits >>> 6));
+            this.bitMask = bits - 1;
+        }
+
+        void add(String value) {
+            long h1 = hash1(value);
+            long h2 = hash2(value);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = (h1 + i * h2) & bitMask;
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(index, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash1(value);
+            long h2 = hash2(value);
+            for (int i = 0; i < HASH_COUNT; i++) {
+                long bit = (h1 + i * h2) & bitMask;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static long hash1(String value) {
+            return mix(value.hashCode());
+        }
+
+        private static long hash2(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            // 第二个哈希必须为奇数，保证各探测位置不同
+            return mix(h) | 1L;
+        }
+
+        private static long mix(long h) {
+            h ^= (h >>> 33);
+            h *= 0xff51afd7ed558ccdL;
+            h ^= (h >>> 33);
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= (h >>> 33);
+            return h;
+        }
+    }
+}
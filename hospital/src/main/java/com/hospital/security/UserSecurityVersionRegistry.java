@@ -0,0 +1,70 @@
+package com.hospital.security;
+
+import com.hospital.entity.User;
+import com.hospital.repository.UserRepository;
+import com.hospital.util.BoundedTtlCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 无状态令牌模式下的用户安全版本校验。
+ * 令牌中携带签发时的 securityVersion，这里与用户当前版本比对；
+ * 当前版本在本地缓存一段时间，避免每个请求都查询数据库。
+ * 本节点上的修改会立即失效缓存，其他节点最多延迟一个 TTL 生效。
+ */
+@Component
+public class UserSecurityVersionRegistry {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${jwt.stateless.version-check-ttl:30s}")
+    private Duration ttl;
+
+    @Value("${security.user-cache.max-size:10000}")
+    private int maxSize;
+
+    private BoundedTtlCache<Long, SecurityState> states;
+
+    @PostConstruct
+    void init() {
+        this.states = new BoundedTtlCache<>("userSecurityVersion", maxSize, ttl);
+    }
+
+    /**
+     * 令牌中的版本仍为用户当前版本且用户未被禁用时返回 true。
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        if (userId == null) {
+            return false;
+        }
+        SecurityState state = states.get(userId, this::load);
+        return state.active() && state.version() == tokenVersion;
+    }
+
+    /**
+     * 用户密码、状态或角色在本节点被修改后调用，下一次校验将重新读取。
+     */
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            states.invalidate(userId);
+        }
+    }
+
+    public BoundedTtlCache.CacheStats cacheStats() {
+        return states.stats();
+    }
+
+    private SecurityState load(Long userId) {
+        return userRepository.findById(userId)
+                .map(user -> new SecurityState(user.currentSecurityVersion(), user.getStatus() != User.Status.INACTIVE))
+                .orElseGet(() -> new SecurityState(-1, false));
+    }
+
+    private record SecurityState(int version, boolean active) {
+    }
+}
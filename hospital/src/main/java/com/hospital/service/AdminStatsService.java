@@ -0,0 +1,28 @@
+package com.hospital.service;
+
+import com.hospital.model.AdminStatsResponse;
+import com.hospital.model.TimeSeriesPoint;
+import com.hospital.util.SnapshotCache;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface AdminStatsService {
+    AdminStatsResponse getStats();
+
+    /**
+     * 带缓存的统计快照，供轮询的仪表盘使用；新鲜度窗口见 stats.snapshot.*。
+     */
+    SnapshotCache.Snapshot<AdminStatsResponse> getStatsSnapshot();
+
+    /**
+     * 从汇总表读取挂号趋势，不访问挂号表。
+     *
+     * @param from        起始日期（含）
+     * @param to          结束日期（含）
+     * @param granularity HOUR、DAY 或 MONTH
+     * @param groupBy     可选：department、doctor、type、channel、status、paymentStatus
+     * @throws IllegalArgumentException 参数不合法或时间跨度超出该粒度允许的范围
+     */
+    List<TimeSeriesPoint> getTimeSeries(LocalDate from, LocalDate to, String granularity, String groupBy);
+}
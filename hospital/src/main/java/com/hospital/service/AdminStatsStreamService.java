@@ -0,0 +1,15 @@
+package com.hospital.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface AdminStatsStreamService {
+
+    /**
+     * 订阅仪表盘增量事件。lastEventId 为浏览器重连时携带的 Last-Event-ID，仍在环形缓冲内时从其后补发。
+     *
+     * @throws com.hospital.exception.ServiceBusyException 连接数已达上限
+     */
+    SseEmitter subscribe(String lastEventId);
+
+    int connectedClients();
+}
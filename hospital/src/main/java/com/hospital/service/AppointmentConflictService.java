@@ -0,0 +1,30 @@
+package com.hospital.service;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * 同一患者的挂号冲突检测与写入串行化：本节点按患者 id 分条带加锁，
+ * 数据库锁定患者行，多节点部署下同样不会出现两个并发挂号都通过冲突检测。
+ */
+public interface AppointmentConflictService {
+
+    /**
+     * 预约时间前后该分钟数内已有有效挂号即视为冲突。
+     */
+    int CONFLICT_WINDOW_MINUTES = 30;
+
+    /**
+     * 持有该患者的锁执行 action。没有外层事务时在新事务中执行，锁在提交后释放；
+     * 已有事务时加入该事务，锁持有到外层事务结束。
+     */
+    <T> T withPatientLock(Long patientId, Supplier<T> action);
+
+    /**
+     * 患者在预约时间前后 {@link #CONFLICT_WINDOW_MINUTES} 分钟内是否已有未取消的挂号，
+     * 应在 {@link #withPatientLock} 中调用。
+     *
+     * @param excludeRegistrationId 修改挂号时排除其自身，新建时传 null
+     */
+    boolean hasConflict(Long patientId, LocalDateTime appointmentTime, Long excludeRegistrationId);
+}
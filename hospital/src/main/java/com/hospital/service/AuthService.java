@@ -0,0 +1,13 @@
+package com.hospital.service;
+
+import com.hospital.entity.User;
+
+public interface AuthService {
+    /**
+     * 校验用户名与密码，成功时返回用户并记录最近登录时间。
+     *
+     * @throws org.springframework.security.authentication.BadCredentialsException 用户名或密码错误
+     * @throws org.springframework.security.authentication.DisabledException       用户已被禁用
+     */
+    User login(String username, String password);
+}
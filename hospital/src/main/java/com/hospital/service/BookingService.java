@@ -0,0 +1,44 @@
+package com.hospital.service;
+
+import com.hospital.entity.Registration;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * 挂号与排班号源的一致性维护：挂号占用号源，取消释放号源，恢复已取消的挂号重新占用号源。
+ */
+public interface BookingService {
+
+    /**
+     * 占用号源并保存挂号。未指定排班时按医生与预约时间匹配排班，匹配不到则不占用号源。
+     *
+     * @throws com.hospital.exception.SlotUnavailableException 排班已满或未开放
+     */
+    Registration book(Registration registration);
+
+    /**
+     * 修改挂号状态并同步号源；改为取消时释放号源，从取消恢复时重新占用。
+     *
+     * @throws com.hospital.exception.SlotUnavailableException 恢复时排班已满或未开放
+     */
+    Registration changeStatus(Registration registration, Registration.Status status);
+
+    /**
+     * 修改预约时间并同步排班：新时间仍在当前排班内时只改时间；否则改挂到覆盖新时间的该医生排班，
+     * 占用新排班号源、释放原排班号源（已取消的挂号只改排班不动号源）。
+     *
+     * @throws IllegalArgumentException 原挂号有排班而新时间不在该医生的任何排班内
+     * @throws com.hospital.exception.SlotUnavailableException 新排班已满或未开放
+     */
+    void reschedule(Registration registration, LocalDateTime appointmentTime);
+
+    /**
+     * 批量修改状态，任一挂号无法恢复号源时整体回滚。
+     */
+    void changeStatus(Collection<Registration> registrations, Registration.Status status);
+
+    default Registration cancel(Registration registration) {
+        return changeStatus(registration, Registration.Status.CANCELLED);
+    }
+}
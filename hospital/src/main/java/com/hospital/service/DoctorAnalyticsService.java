@@ -0,0 +1,16 @@
+package com.hospital.service;
+
+import com.hospital.model.DoctorWorkloadDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DoctorAnalyticsService {
+
+    /**
+     * 按预约时间统计 [from, to] 区间内每位医生的工作量，包括区间内没有挂号的医生。
+     *
+     * @throws IllegalArgumentException 时间范围不合法
+     */
+    List<DoctorWorkloadDto> getDoctorWorkload(LocalDate from, LocalDate to);
+}
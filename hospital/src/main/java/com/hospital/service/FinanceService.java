@@ -0,0 +1,15 @@
+package com.hospital.service;
+
+import com.hospital.model.FinanceSummaryDto;
+
+import java.time.LocalDate;
+
+public interface FinanceService {
+
+    /**
+     * 按挂号日期统计 [from, to] 区间内的收入、待收与退款金额，并按日、科室、医生、挂号类型拆分。
+     *
+     * @throws IllegalArgumentException 时间范围不合法
+     */
+    FinanceSummaryDto getSummary(LocalDate from, LocalDate to);
+}
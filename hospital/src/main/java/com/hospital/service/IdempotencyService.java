@@ -0,0 +1,31 @@
+package com.hospital.service;
+
+/**
+ * 幂等键存储：本地有界缓存 + idempotency_record 表。
+ * 同一幂等键的重复请求重放首次响应；首次请求仍在执行时，重复请求等待其完成。
+ */
+public interface IdempotencyService {
+
+    enum Outcome {
+        // 首次请求，调用方执行后须调用 complete 或 release
+        EXECUTE,
+        // 已有响应，直接重放
+        REPLAY,
+        // 幂等键已用于内容不同的请求
+        MISMATCH,
+        // 首次请求在等待时间内仍未完成
+        IN_PROGRESS
+    }
+
+    record StoredResponse(String requestHash, int status, String contentType, byte[] body) {
+    }
+
+    record Claim(Outcome outcome, StoredResponse response) {
+    }
+
+    Claim claim(String recordKey, String requestHash);
+
+    void complete(String recordKey, StoredResponse response);
+
+    void release(String recordKey);
+}
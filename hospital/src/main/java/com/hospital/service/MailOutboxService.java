@@ -0,0 +1,37 @@
+package com.hospital.service;
+
+import java.time.LocalDateTime;
+
+public interface MailOutboxService {
+
+    /**
+     * 将邮件写入发件箱后立即返回，由后台工作线程异步发送。
+     */
+    void enqueue(String to, String subject, String text);
+
+    /**
+     * 写入带过期时间的邮件（如验证码）：到期仍未发出则不再发送，重试不会超过过期时间；
+     * 发出或放弃后清除正文，表中不保留验证码。
+     */
+    void enqueue(String to, String subject, String text, LocalDateTime expiresAt);
+
+    /**
+     * 认领到期的邮件并交给工作线程发送，返回本次认领的数量。
+     */
+    int dispatchDue();
+
+    MailOutboxStats stats();
+
+    record MailOutboxStats(long pending,
+                           long sending,
+                           long failed,
+                           long expired,
+                           long enqueued,
+                           long sent,
+                           long retried,
+                           long deadLettered,
+                           long expiredDropped,
+                           long batches,
+                           int activeWorkers) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.hospital.service;
+
+import java.util.function.Supplier;
+
+/**
+ * 乐观锁冲突重试：每次尝试都在独立事务中重新加载实体并应用修改，
+ * 提交时版本号冲突则回滚、随机退避后重试，次数用尽抛出
+ * {@link com.hospital.exception.ConcurrentUpdateException}。
+ * 只适合短事务，不要在已有事务中调用。
+ */
+public interface OptimisticRetryService {
+
+    /**
+     * @param action       一次完整的读取-修改-保存，可能被执行多次，不能有事务外的副作用
+     * @param currentState 重试用尽后读取记录最新状态，放入 409 响应
+     */
+    <T> T execute(Supplier<T> action, Supplier<?> currentState);
+}
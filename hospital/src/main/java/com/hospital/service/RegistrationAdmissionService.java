@@ -0,0 +1,38 @@
+package com.hospital.service;
+
+import com.hospital.model.AdmissionTicketDto;
+import com.hospital.util.AdmissionQueue;
+
+/**
+ * 挂号排队室：高峰期先领排队号，按可承受的速率放行后才能提交挂号。
+ */
+public interface RegistrationAdmissionService {
+
+    boolean isEnabled();
+
+    /**
+     * 领取排队号；未开启排队时不分配排队号，直接返回已放行。
+     *
+     * @throws com.hospital.exception.ServiceBusyException 排队人数已达上限
+     */
+    AdmissionTicketDto issueTicket();
+
+    /**
+     * 查询排队号，同时视为客户端仍在等待；不存在的号返回 EXPIRED；未开启排队时直接返回已放行。
+     */
+    AdmissionTicketDto getTicket(String ticketId);
+
+    /**
+     * 提交挂号前占用已放行的排队号，未开启排队时直接通过。
+     * 挂号成功后调用 {@link #complete} 核销，失败时调用 {@link #release} 归还，客户端无需重新排队。
+     *
+     * @throws com.hospital.exception.TooManyRequestsException 未提供排队号、尚未放行、已作废或正被其他请求使用
+     */
+    void admit(String ticketId);
+
+    void complete(String ticketId);
+
+    void release(String ticketId);
+
+    AdmissionQueue.Stats stats();
+}
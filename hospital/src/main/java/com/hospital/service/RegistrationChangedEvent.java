@@ -0,0 +1,27 @@
+package com.hospital.service;
+
+import com.hospital.model.RecentRegistrationDto;
+import com.hospital.service.RegistrationCounterService.Snapshot;
+
+/**
+ * 挂号发生新增、修改或删除时发布的应用事件（由实体监听器发布，监听方应在事务提交后处理）。
+ *
+ * @param before         变更前的计数维度，新增时为 null
+ * @param after          变更后的计数维度，删除时为 null
+ * @param departmentName after（删除时为 before）所属科室名称，未分配时为 null
+ * @param current        变更后的挂号摘要，删除时为 null
+ */
+public record RegistrationChangedEvent(Long registrationId,
+                                       Snapshot before,
+                                       Snapshot after,
+                                       String departmentName,
+                                       RecentRegistrationDto current) {
+
+    public boolean isCreated() {
+        return before == null && after != null;
+    }
+
+    public boolean isRemoved() {
+        return after == null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.hospital.service;
+
+import com.hospital.entity.Registration;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Map;
+
+/**
+ * 挂号计数器：按预约日期、月份、科室与状态维护的内存计数，由实体监听器增量更新，
+ * 读取为常数时间，与挂号表大小无关。
+ * 计数定期刷入 registration_counter 表并从表中合并其他节点的增量，启动时从表中恢复。
+ * 通过 JPQL 批量更新（不经过实体回调）修改的挂号不会立即反映到计数中，由定期校准修正。
+ */
+public interface RegistrationCounterService {
+
+    /**
+     * 一条挂号从 before 变为 after（新增时 before 为 null，删除时 after 为 null）。
+     * 处于事务中时在提交后生效，回滚则忽略。
+     */
+    void apply(Snapshot before, Snapshot after);
+
+    /**
+     * 计数已从计数表恢复完成，可以代替查询使用。
+     */
+    boolean isReady();
+
+    /**
+     * 从挂号表重新统计并修正计数，返回被修正的计数个数；其他节点正在校准时抛出 IllegalStateException。
+     */
+    int reconcile();
+
+    long countForDay(LocalDate day);
+
+    long countForMonth(YearMonth month);
+
+    /**
+     * 按科室 ID 计数，没有科室的挂号计在 {@link #UNASSIGNED_DEPARTMENT_ID} 下，计数为 0 的科室不返回。
+     */
+    Map<Long, Long> countByDepartment();
+
+    Map<Registration.Status, Long> countByStatus();
+
+    long UNASSIGNED_DEPARTMENT_ID = 0L;
+
+    /**
+     * 一条挂号在计数维度上的取值。科室优先取病种所属科室，其次取医生所属科室。
+     */
+    record Snapshot(LocalDate day, Registration.Status status, Long departmentId) {
+
+        public static Snapshot of(Registration registration) {
+            LocalDate day = registration.getAppointmentTime() != null
+                    ? registration.getAppointmentTime().toLocalDate()
+                    : null;
+            Long departmentId = UNASSIGNED_DEPARTMENT_ID;
+            if (registration.getDisease() != null && registration.getDisease().getDepartment() != null) {
+                departmentId = registration.getDisease().getDepartment().getId();
+            } else if (registration.getDoctor() != null && registration.getDoctor().getDepartment() != null) {
+                departmentId = registration.getDoctor().getDepartment().getId();
+            }
+            return new Snapshot(day, registration.getStatus(), departmentId);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.hospital.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * 挂号按小时 / 天的汇总。汇总以挂号时间分桶，因此一条挂号始终落在同一个桶中，
+ * 状态等字段变化后只需重算其所在日期。
+ */
+public interface RegistrationRollupService {
+
+    /**
+     * 重算指定日期的小时桶与天桶（先删后插，在同一事务中完成）。
+     */
+    void rebuildDay(LocalDate day);
+
+    /**
+     * 找出 since 之后有变化的挂号所在的日期；since 为 null 时返回全部日期。
+     */
+    Set<LocalDate> findDirtyDays(LocalDateTime since);
+}
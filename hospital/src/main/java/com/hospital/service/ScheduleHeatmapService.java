@@ -0,0 +1,16 @@
+package com.hospital.service;
+
+import com.hospital.model.ScheduleHeatmapDto;
+
+import java.time.LocalDate;
+
+public interface ScheduleHeatmapService {
+
+    /**
+     * 统计 [from, to] 内各科室每天每个时段的容量、已预约、剩余号源与利用率（不含暂停的排班）。
+     *
+     * @param blockHours 时段长度（小时），1～24
+     * @throws IllegalArgumentException 参数不合法
+     */
+    ScheduleHeatmapDto getHeatmap(LocalDate from, LocalDate to, int blockHours);
+}
@@ -0,0 +1,49 @@
+package com.hospital.service;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * 热门排班的内存号源库存。
+ * 已加载（热）的排班在内存中扣减剩余号源，占用结果定期合并写回 schedule.booked；
+ * 未加载（冷）的排班调用传入的数据库路径。仅适用于单节点处理挂号的部署。
+ */
+public interface SlotInventory {
+
+    /**
+     * 占用一个号源，返回 false 表示已满或未开放。
+     * 内存路径在事务中调用时，事务回滚会自动归还号源。
+     *
+     * @param databaseReserve 排班不在库存中时执行的数据库条件更新，返回是否占用成功
+     */
+    boolean reserve(Long scheduleId, BooleanSupplier databaseReserve);
+
+    /**
+     * 释放一个号源；内存路径在事务提交后生效。
+     *
+     * @param databaseRelease 排班不在库存中时执行的数据库更新
+     */
+    void release(Long scheduleId, Runnable databaseRelease);
+
+    /**
+     * 是否还有剩余号源。热排班按内存中的剩余数判断（schedule.booked 可能尚未写回），
+     * 其他排班执行传入的数据库判断。
+     */
+    boolean hasAvailable(Long scheduleId, BooleanSupplier databaseAvailable);
+
+    /**
+     * 排班被直接修改（容量、状态等）后调用：写回未落库的增量并移出库存，之后按需重新加载。
+     */
+    void evict(Long scheduleId);
+
+    InventoryStats stats();
+
+    record InventoryStats(boolean enabled,
+                          int hotSchedules,
+                          long pendingWrites,
+                          long memoryReservations,
+                          long memorySoldOut,
+                          long databaseReservations,
+                          long warmFailures,
+                          long flushFailures) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.hospital.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 邮箱验证码存储。
+ * 每个 key（小写邮箱）同一时间只保留一条验证码；校验次数达到上限后该验证码作废，只能重新获取。
+ * 内存实现仅适用于单节点部署，多节点部署请使用数据库实现（security.verification-code.store=database）。
+ */
+public interface VerificationCodeStore {
+
+    /**
+     * 保存新验证码。距上一次发送不足 resendInterval 时不保存，返回还需等待的时间；保存成功返回 {@link Duration#ZERO}。
+     *
+     * @throws com.hospital.exception.ServiceBusyException 存储已满
+     */
+    Duration issue(String key, String code, LocalDateTime expireAt, LocalDateTime now, Duration resendInterval);
+
+    /**
+     * 校验验证码，每次调用计为一次尝试；校验通过时验证码被消费，不能重复使用。
+     */
+    VerifyResult verify(String key, String code, LocalDateTime now, int maxAttempts);
+
+    /**
+     * 清理已过期的验证码，返回清理数量。
+     */
+    int purgeExpired(LocalDateTime now);
+
+    long size();
+
+    enum VerifyResult {
+        MATCHED,
+        MISMATCH,
+        NOT_FOUND,
+        EXPIRED,
+        LOCKED
+    }
+}
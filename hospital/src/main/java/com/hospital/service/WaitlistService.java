@@ -0,0 +1,29 @@
+package com.hospital.service;
+
+import com.hospital.model.WaitlistEntryDto;
+
+/**
+ * 排班候补：号源已满时患者按先后加入候补队列，
+ * 有挂号取消释放号源时，号源转给最早的候补并为其创建挂号。
+ */
+public interface WaitlistService {
+
+    /**
+     * 加入候补，只有已满的排班可以候补，同一患者在同一排班只能有一条等待中的候补。
+     */
+    WaitlistEntryDto join(Long scheduleId, Long patientId, String notes);
+
+    WaitlistEntryDto getEntry(Long scheduleId, Long entryId);
+
+    /**
+     * 退出候补，已转正的候补不能退出（请取消挂号）。
+     */
+    void leave(Long scheduleId, Long entryId);
+
+    /**
+     * 在释放号源的事务中调用：事务提交后由后台线程把号源转给该排班最早的候补，
+     * 在候补患者的锁内重新占用号源并创建挂号。释放号源的事务不会再去锁候补患者，
+     * 锁顺序与普通挂号一致（先患者行、后排班行）。号源在此之前已被直接挂号占用时，候补继续等待。
+     */
+    void promoteAfterCommit(Long scheduleId);
+}
@@ -0,0 +1,277 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Department;
+import com.hospital.entity.Doctor;
+import com.hospital.entity.RegistrationRollup;
+import com.hospital.model.AdminStatsResponse;
+import com.hospital.model.TimeSeriesPoint;
+import com.hospital.repository.DepartmentRepository;
+import com.hospital.repository.DiseaseRepository;
+import com.hospital.repository.DoctorRepository;
+import com.hospital.repository.PatientRepository;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.repository.UserRepository;
+import com.hospital.service.AdminStatsService;
+import com.hospital.service.RegistrationCounterService;
+import com.hospital.util.SnapshotCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 管理端首页统计。挂号计数器就绪时今日、本月与科室分布直接读取计数器（常数时间），
+ * 否则由聚合查询在数据库中算出，不再把挂号记录整表加载到内存。
+ */
+@Service
+public class AdminStatsServiceImpl implements AdminStatsService {
+
+    static final String UNASSIGNED_DEPARTMENT = "未分配科室";
+
+    private static final int RECENT_LIMIT = 8;
+
+    // 各粒度允许查询的最大天数，避免一次返回过多的桶
+    private static final long MAX_HOUR_RANGE_DAYS = 31;
+    private static final long MAX_DAY_RANGE_DAYS = 731;
+    private static final long MAX_MONTH_RANGE_DAYS = 3660;
+
+    // groupBy 参数白名单 → 汇总实体属性，拼接 JPQL 时只使用这里的值
+    private static final Map<String, String> GROUP_BY_ATTRIBUTES = Map.of(
+            "department", "departmentId",
+            "doctor", "doctorId",
+            "type", "type",
+            "channel", "channel",
+            "status", "status",
+            "paymentstatus", "paymentStatus"
+    );
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DiseaseRepository diseaseRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private RegistrationCounterService counterService;
+
+    @Value("${stats.snapshot.fresh-for:5s}")
+    private Duration snapshotFreshFor;
+
+    @Value("${stats.snapshot.max-stale:60s}")
+    private Duration snapshotMaxStale;
+
+    private ExecutorService snapshotRefresher;
+
+    private SnapshotCache<AdminStatsResponse> statsSnapshot;
+
+    @PostConstruct
+    void init() {
+        this.snapshotRefresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "admin-stats-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.statsSnapshot = new SnapshotCache<>(this::getStats, snapshotFreshFor, snapshotMaxStale, snapshotRefresher);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        snapshotRefresher.shutdownNow();
+    }
+
+    @Override
+    public SnapshotCache.Snapshot<AdminStatsResponse> getStatsSnapshot() {
+        return statsSnapshot.get();
+    }
+
+    @Override
+    public AdminStatsResponse getStats() {
+        AdminStatsResponse stats = new AdminStatsResponse();
+
+        stats.setTotalUsers(userRepository.count());
+        stats.setTotalDoctors(doctorRepository.count());
+        stats.setTotalPatients(patientRepository.count());
+        stats.setTotalDiseases(diseaseRepository.count());
+        stats.setDepartmentCount(departmentRepository.count());
+
+        LocalDate today = LocalDate.now();
+        if (counterService.isReady()) {
+            stats.setTodayRegistrations(counterService.countForDay(today));
+            stats.setMonthRegistrations(counterService.countForMonth(YearMonth.from(today)));
+            stats.setRegistrationByDepartment(departmentStatsFromCounters());
+        } else {
+            fillRegistrationStatsFromQueries(stats, today);
+        }
+        stats.setRecentRegistrations(registrationRepository.findRecent(PageRequest.of(0, RECENT_LIMIT)));
+        return stats;
+    }
+
+    @Override
+    public List<TimeSeriesPoint> getTimeSeries(LocalDate from, LocalDate to, String granularity, String groupBy) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("时间范围不合法");
+        }
+        String unit = granularity != null ? granularity.trim().toUpperCase(Locale.ROOT) : "DAY";
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        long maxDays = switch (unit) {
+            case "HOUR" -> MAX_HOUR_RANGE_DAYS;
+            case "DAY" -> MAX_DAY_RANGE_DAYS;
+            case "MONTH" -> MAX_MONTH_RANGE_DAYS;
+            default -> throw new IllegalArgumentException("granularity 仅支持 HOUR、DAY、MONTH");
+        };
+        if (days > maxDays) {
+            throw new IllegalArgumentException("时间跨度过大，" + unit + " 粒度最多查询 " + maxDays + " 天");
+        }
+
+        String dimension = null;
+        String groupKey = null;
+        if (groupBy != null && !groupBy.isBlank()) {
+            groupKey = groupBy.trim().toLowerCase(Locale.ROOT);
+            dimension = GROUP_BY_ATTRIBUTES.get(groupKey);
+            if (dimension == null) {
+                throw new IllegalArgumentException("groupBy 仅支持 department、doctor、type、channel、status、paymentStatus");
+            }
+        }
+
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        // 小时粒度读小时桶；天与月都读天桶，月份在数据库中再合并
+        boolean monthly = "MONTH".equals(unit);
+        RegistrationRollup.Granularity source = "HOUR".equals(unit)
+                ? RegistrationRollup.Granularity.HOUR
+                : RegistrationRollup.Granularity.DAY;
+        String bucketSelect = monthly ? "YEAR(x.bucketStart), MONTH(x.bucketStart)" : "x.bucketStart";
+        String select = dimension != null ? bucketSelect + ", x." + dimension : bucketSelect;
+        String jpql = "SELECT " + select + ", SUM(x.registrationCount), SUM(x.feeTotal) FROM RegistrationRollup x " +
+                "WHERE x.granularity = :granularity AND x.bucketStart >= :start AND x.bucketStart < :end " +
+                "GROUP BY " + select + " ORDER BY " + bucketSelect;
+        List<Object[]> rows = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("granularity", source)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultList();
+
+        Map<Long, String> labels = labelsFor(groupKey);
+        List<TimeSeriesPoint> points = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            TimeSeriesPoint point = new TimeSeriesPoint();
+            point.setBucket(monthly
+                    ? LocalDate.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), 1).atStartOfDay()
+                    : (LocalDateTime) row[0]);
+            int column = monthly ? 2 : 1;
+            if (dimension != null) {
+                Object value = row[column++];
+                String key = value instanceof Enum<?> e ? e.name() : String.valueOf(value);
+                point.setKey(key);
+                point.setLabel(labels != null && value instanceof Number n
+                        ? labels.getOrDefault(n.longValue(), "department".equals(groupKey) ? UNASSIGNED_DEPARTMENT : key)
+                        : key);
+            }
+            point.setCount(((Number) row[column++]).longValue());
+            point.setFeeTotal(row[column] != null ? (BigDecimal) row[column] : BigDecimal.ZERO);
+            points.add(point);
+        }
+        return points;
+    }
+
+    private Map<Long, String> labelsFor(String groupKey) {
+        if ("department".equals(groupKey)) {
+            Map<Long, String> names = new HashMap<>();
+            for (Department department : departmentRepository.findAll()) {
+                names.put(department.getId(), department.getName());
+            }
+            return names;
+        }
+        if ("doctor".equals(groupKey)) {
+            Map<Long, String> names = new HashMap<>();
+            for (Doctor doctor : doctorRepository.findAll()) {
+                names.put(doctor.getId(), doctor.getName());
+            }
+            return names;
+        }
+        return null;
+    }
+
+    private void fillRegistrationStatsFromQueries(AdminStatsResponse stats, LocalDate today) {
+        // 区间均为左闭右开 [start, end)
+        stats.setTodayRegistrations(registrationRepository.countByAppointmentTimeInRange(
+                today.atStartOfDay(), today.plusDays(1).atStartOfDay()));
+
+        LocalDate firstDayOfMonth = today.withDayOfMonth(1);
+        stats.setMonthRegistrations(registrationRepository.countByAppointmentTimeInRange(
+                firstDayOfMonth.atStartOfDay(), firstDayOfMonth.plusMonths(1).atStartOfDay()));
+
+        stats.setRegistrationByDepartment(departmentStatsFromQuery());
+    }
+
+    private List<AdminStatsResponse.DepartmentStat> departmentStatsFromQuery() {
+        Map<String, Long> byDepartment = new LinkedHashMap<>();
+        for (Object[] row : registrationRepository.countGroupByDepartment()) {
+            String department = row[0] != null ? (String) row[0] : UNASSIGNED_DEPARTMENT;
+            byDepartment.merge(department, ((Number) row[1]).longValue(), Long::sum);
+        }
+        return toDepartmentStats(byDepartment);
+    }
+
+    private List<AdminStatsResponse.DepartmentStat> departmentStatsFromCounters() {
+        Map<Long, Long> counts = counterService.countByDepartment();
+        if (counts.isEmpty()) {
+            return List.of();
+        }
+        // 科室表很小，按 ID 解析名称；已删除的科室计入未分配
+        Map<Long, String> names = new HashMap<>();
+        for (Department department : departmentRepository.findAll()) {
+            names.put(department.getId(), department.getName());
+        }
+        Map<String, Long> byDepartment = new LinkedHashMap<>();
+        counts.forEach((departmentId, count) ->
+                byDepartment.merge(names.getOrDefault(departmentId, UNASSIGNED_DEPARTMENT), count, Long::sum));
+        return toDepartmentStats(byDepartment);
+    }
+
+    private List<AdminStatsResponse.DepartmentStat> toDepartmentStats(Map<String, Long> byDepartment) {
+        return byDepartment.entrySet().stream()
+                .map(entry -> {
+                    AdminStatsResponse.DepartmentStat stat = new AdminStatsResponse.DepartmentStat();
+                    stat.setDepartment(entry.getKey());
+                    stat.setCount(entry.getValue());
+                    return stat;
+                })
+                .sorted(Comparator.comparing(AdminStatsResponse.DepartmentStat::getCount).reversed())
+                .toList();
+    }
+}
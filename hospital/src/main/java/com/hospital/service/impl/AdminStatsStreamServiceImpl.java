@@ -0,0 +1,343 @@
+package com.hospital.service.impl;
+
+import com.hospital.exception.ServiceBusyException;
+import com.hospital.service.AdminStatsStreamService;
+import com.hospital.service.RegistrationChangedEvent;
+import com.hospital.service.RegistrationCounterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 管理端仪表盘的 SSE 推送。
+ * 每个事件在发布时只序列化一次，存入固定大小的环形缓冲，缓冲即各连接的有界队列；
+ * 分发线程只负责调度，由固定大小的发送线程池（与连接数无关）按各连接的游标写出，
+ * 每个连接同一时刻至多一个发送任务，慢连接不会阻塞其他连接。单次写出超过 send-timeout 或写出失败的连接被移除。
+ * 连接本身走 Servlet 异步，不占用请求线程。落后超过缓冲长度的连接收到 resync 事件，应重新拉取 /api/admin/stats。
+ */
+@Service
+public class AdminStatsStreamServiceImpl implements AdminStatsStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminStatsStreamServiceImpl.class);
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Value("${stats.stream.buffer-size:1024}")
+    private int bufferSize;
+
+    @Value("${stats.stream.max-clients:200}")
+    private int maxClients;
+
+    @Value("${stats.stream.timeout:30m}")
+    private Duration timeout;
+
+    @Value("${stats.stream.heartbeat:15s}")
+    private Duration heartbeat;
+
+    @Value("${stats.stream.send-timeout:5s}")
+    private Duration sendTimeout;
+
+    @Value("${stats.stream.sender-threads:4}")
+    private int senderThreads;
+
+    private AtomicReferenceArray<BufferedEvent> ring;
+
+    // 下一个事件的序号；只在持有 lock 时写入
+    private volatile long head;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+    private Thread dispatcher;
+    private ExecutorService senders;
+    private volatile boolean running = true;
+
+    private Set<DataWithMediaType> heartbeatPayload;
+    private Set<DataWithMediaType> resyncPayload;
+
+    @PostConstruct
+    void init() {
+        this.ring = new AtomicReferenceArray<>(bufferSize);
+        this.heartbeatPayload = SseEmitter.event().comment("ping").build();
+        this.resyncPayload = SseEmitter.event().name("resync").data("{}", MediaType.APPLICATION_JSON).build();
+        // 待执行的任务每个连接至多一个，队列长度不超过 max-clients
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senderThreads), runnable -> {
+            Thread thread = new Thread(runnable, "admin-stats-send-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "admin-stats-stream");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        senders.shutdownNow();
+        for (Client client : clients) {
+            client.emitter.complete();
+        }
+        clients.clear();
+    }
+
+    @Override
+    public SseEmitter subscribe(String lastEventId) {
+        if (clients.size() >= maxClients) {
+            throw new ServiceBusyException("实时统计连接数已满，请稍后再试");
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Client client = new Client(emitter, resumeCursor(lastEventId));
+        emitter.onCompletion(() -> clients.remove(client));
+        emitter.onTimeout(() -> clients.remove(client));
+        emitter.onError(ex -> clients.remove(client));
+        clients.add(client);
+        signal();
+        return emitter;
+    }
+
+    @Override
+    public int connectedClients() {
+        return clients.size();
+    }
+
+    // 默认在事务提交后执行，回滚的修改不会推送；没有事务时立即执行
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRegistrationChanged(RegistrationChangedEvent event) {
+        if (event.isCreated()) {
+            publish("registration-created", Map.of(
+                    "id", event.registrationId(),
+                    "status", event.after().status().name(),
+                    "departmentId", event.after().departmentId(),
+                    "appointmentTime", Objects.toString(event.current().getAppointmentTime(), "")
+            ));
+            publish("recent-registration", event.current());
+        } else if (!event.isRemoved() && event.before() != null
+                && event.before().status() != event.after().status()) {
+            publish("registration-status", Map.of(
+                    "id", event.registrationId(),
+                    "from", String.valueOf(event.before().status()),
+                    "to", String.valueOf(event.after().status())
+            ));
+            publish("recent-registration", event.current());
+        }
+
+        Long before = event.before() != null ? event.before().departmentId() : null;
+        Long after = event.after() != null ? event.after().departmentId() : null;
+        if (!Objects.equals(before, after)) {
+            if (before != null) {
+                publish("department-count", departmentDelta(before, null, -1));
+            }
+            if (after != null) {
+                publish("department-count", departmentDelta(after, event.departmentName(), 1));
+            }
+        }
+    }
+
+    private Map<String, Object> departmentDelta(Long departmentId, String name, int delta) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("departmentId", departmentId);
+        if (name == null && departmentId == RegistrationCounterService.UNASSIGNED_DEPARTMENT_ID) {
+            name = AdminStatsServiceImpl.UNASSIGNED_DEPARTMENT;
+        }
+        data.put("department", name);
+        data.put("delta", delta);
+        return data;
+    }
+
+    private void publish(String type, Object data) {
+        String json = jsonMapper.writeValueAsString(data);
+        lock.lock();
+        try {
+            long seq = head;
+            Set<DataWithMediaType> payload = SseEmitter.event()
+                    .id(Long.toString(seq))
+                    .name(type)
+                    .data(json, MediaType.APPLICATION_JSON)
+                    .build();
+            ring.set((int) (seq % bufferSize), new BufferedEvent(seq, payload));
+            head = seq + 1;
+            published.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signal() {
+        lock.lock();
+        try {
+            published.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long resumeCursor(String lastEventId) {
+        long current = head;
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return current;
+        }
+        try {
+            long next = Long.parseLong(lastEventId.trim()) + 1;
+            return next >= 0 && next <= current ? next : current;
+        } catch (NumberFormatException ex) {
+            return current;
+        }
+    }
+
+    private void dispatchLoop() {
+        long lastHeartbeat = System.nanoTime();
+        // 至少每半个发送超时醒来一次，检查卡住的连接
+        long waitMillis = Math.max(1, Math.min(heartbeat.toMillis(), sendTimeout.toMillis() / 2));
+        while (running) {
+            try {
+                lock.lock();
+                try {
+                    if (!hasPendingEvents()) {
+                        published.await(waitMillis, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                evictStalled();
+                boolean heartbeatDue = System.nanoTime() - lastHeartbeat >= heartbeat.toNanos();
+                if (heartbeatDue) {
+                    lastHeartbeat = System.nanoTime();
+                }
+                schedule(heartbeatDue);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Admin stats stream dispatch failed", ex);
+            }
+        }
+    }
+
+    // 正在发送的连接由发送任务自己追赶，不计入，避免分发线程空转
+    private boolean hasPendingEvents() {
+        long current = head;
+        for (Client client : clients) {
+            if (!client.sending.get() && client.cursor < current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void schedule(boolean heartbeatDue) {
+        long current = head;
+        for (Client client : clients) {
+            boolean pending = client.cursor < current;
+            if ((pending || heartbeatDue) && client.sending.compareAndSet(false, true)) {
+                // 有事件要发的连接不需要额外的心跳
+                boolean ping = heartbeatDue && !pending;
+                senders.execute(() -> drain(client, ping));
+            }
+        }
+    }
+
+    private void drain(Client client, boolean ping) {
+        try {
+            if (ping) {
+                send(client, heartbeatPayload);
+            }
+            long current = head;
+            while (client.cursor < current && clients.contains(client)) {
+                BufferedEvent event = ring.get((int) (client.cursor % bufferSize));
+                if (event == null || event.seq != client.cursor) {
+                    // 该连接落后太多，事件已被覆盖
+                    send(client, resyncPayload);
+                    client.cursor = current;
+                    break;
+                }
+                send(client, event.payload);
+                client.cursor++;
+            }
+        } catch (IOException | IllegalStateException ex) {
+            drop(client, ex);
+        } finally {
+            client.sending.set(false);
+        }
+        // 发送期间又有新事件，唤醒分发线程重新调度
+        if (client.cursor < head && clients.contains(client)) {
+            signal();
+        }
+    }
+
+    private void send(Client client, Set<DataWithMediaType> payload) throws IOException {
+        client.sendStartedAt = System.nanoTime();
+        try {
+            client.emitter.send(payload);
+        } finally {
+            client.sendStartedAt = 0;
+        }
+    }
+
+    // 移除后连接随异步请求结束而关闭，卡住的写出由容器的写超时中断，发送线程随之归还
+    private void evictStalled() {
+        long now = System.nanoTime();
+        for (Client client : clients) {
+            long startedAt = client.sendStartedAt;
+            if (startedAt != 0 && now - startedAt > sendTimeout.toNanos()) {
+                drop(client, new IOException("SSE send timed out after " + sendTimeout.toMillis() + " ms"));
+            }
+        }
+    }
+
+    private void drop(Client client, Exception ex) {
+        if (clients.remove(client)) {
+            log.debug("Dropping admin stats stream client: {}", ex.getMessage());
+            client.emitter.completeWithError(ex);
+        }
+    }
+
+    private record BufferedEvent(long seq, Set<DataWithMediaType> payload) {
+    }
+
+    private static final class Client {
+        private final SseEmitter emitter;
+        // 下一个要发送的事件序号，只由持有 sending 的发送任务修改
+        private volatile long cursor;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // 当前这次写出开始的时间（System.nanoTime），未在写出时为 0
+        private volatile long sendStartedAt;
+
+        Client(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.hospital.service.impl;
+
+import com.hospital.exception.ServiceBusyException;
+import com.hospital.repository.PatientRepository;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.service.AppointmentConflictService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 正确性由患者行锁（SELECT ... FOR UPDATE）保证；本节点的条带锁让同一患者的请求先在内存中排队，
+ * 不会占着数据库连接等待行锁。锁顺序固定为先患者行、后挂号与排班行。
+ */
+@Service
+public class AppointmentConflictServiceImpl implements AppointmentConflictService {
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${registration.patient-lock.stripes:256}")
+    private int stripeCount;
+
+    @Value("${registration.patient-lock.timeout:5s}")
+    private Duration lockTimeout;
+
+    private ReentrantLock[] stripes;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        this.stripes = new ReentrantLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public <T> T withPatientLock(Long patientId, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(patientId);
+        acquire(lock);
+        boolean handedOff = false;
+        try {
+            T result = transactionTemplate.execute(status -> {
+                patientRepository.lockForBooking(patientId);
+                return action.get();
+            });
+            // 加入了外层事务：行锁要到外层提交才释放，本节点的锁也保持到那时
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        lock.unlock();
+                    }
+                });
+                handedOff = true;
+            }
+            return result;
+        } finally {
+            if (!handedOff) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasConflict(Long patientId, LocalDateTime appointmentTime, Long excludeRegistrationId) {
+        return registrationRepository.findConflictingRegistrationId(
+                patientId,
+                appointmentTime.minusMinutes(CONFLICT_WINDOW_MINUTES),
+                appointmentTime.plusMinutes(CONFLICT_WINDOW_MINUTES),
+                excludeRegistrationId != null ? excludeRegistrationId : 0L
+        ) != null;
+    }
+
+    private void acquire(ReentrantLock lock) {
+        try {
+            if (!lock.tryLock(lockTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ServiceBusyException("该患者的挂号请求正在处理，请稍后重试");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("挂号请求被中断");
+        }
+    }
+
+    private ReentrantLock stripeFor(Long patientId) {
+        int h = patientId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & Integer.MAX_VALUE) % stripes.length];
+    }
+}
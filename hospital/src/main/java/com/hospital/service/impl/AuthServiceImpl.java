@@ -0,0 +1,77 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.User;
+import com.hospital.repository.UserRepository;
+import com.hospital.security.CustomUserDetailsService;
+import com.hospital.service.AuthService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 登录流程：只查询一次用户、只做一次密码哈希比对，并由同一个 User 签发令牌。
+ */
+@Service
+public class AuthServiceImpl implements AuthService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    // 用户不存在时也做一次哈希比对，避免通过响应时间探测用户名是否存在
+    private volatile String dummyPasswordHash;
+
+    @Override
+    public User login(String username, String password) {
+        if (!StringUtils.hasText(username) || password == null) {
+            throw new BadCredentialsException("用户名或密码错误");
+        }
+
+        Optional<User> userOptional = userRepository.findByUsername(username);
+        if (userOptional.isEmpty()) {
+            passwordEncoder.matches(password, dummyPasswordHash());
+            throw new BadCredentialsException("用户名或密码错误");
+        }
+
+        User user = userOptional.get();
+        if (!passwordEncoder.matches(password, user.getPassword())) {
+            throw new BadCredentialsException("用户名或密码错误");
+        }
+        if (user.getStatus() == User.Status.INACTIVE) {
+            throw new DisabledException("用户已被禁用");
+        }
+
+        // BCrypt 强度调高后，借助本次拿到的明文透明地重新哈希（密码本身未变，不递增安全版本）
+        if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+            String upgraded = passwordEncoder.encode(password);
+            userRepository.updatePassword(user.getId(), upgraded);
+            user.setPassword(upgraded);
+            userDetailsService.evictUser(user.getUsername());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        userRepository.updateLastLoginAt(user.getId(), now);
+        user.setLastLoginAt(now);
+        return user;
+    }
+
+    private String dummyPasswordHash() {
+        String hash = dummyPasswordHash;
+        if (hash == null) {
+            hash = passwordEncoder.encode("dummy-password-for-timing");
+            dummyPasswordHash = hash;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,160 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Registration;
+import com.hospital.entity.Schedule;
+import com.hospital.exception.SlotUnavailableException;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.repository.ScheduleRepository;
+import com.hospital.service.BookingService;
+import com.hospital.service.SlotInventory;
+import com.hospital.service.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 号源计数只通过条件 UPDATE 修改（booked &lt; capacity 才加一），不先查询再写回，
+ * 并发挂号由数据库行锁串行化，不会超卖。客户端指定的排班须属于挂号医生且覆盖预约时间，否则拒绝。修改挂号状态前先锁定挂号行，
+ * 保证同一挂号并发取消时只释放一次号源。
+ * 开启内存号源库存时，热门排班的占用与释放由 {@link SlotInventory} 在内存中完成。
+ * 取消挂号照常释放号源，提交后再转给该排班的候补（{@link WaitlistService}）。
+ */
+@Service
+public class BookingServiceImpl implements BookingService {
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private SlotInventory slotInventory;
+
+    @Autowired
+    private WaitlistService waitlistService;
+
+    @Override
+    @Transactional
+    public Registration book(Registration registration) {
+        // 新挂号总是插入，忽略客户端传入的版本号
+        registration.setVersion(null);
+        Long scheduleId = registration.getStatus() != Registration.Status.CANCELLED ? resolveScheduleId(registration) : null;
+        if (scheduleId != null) {
+            checkSchedule(registration, scheduleId);
+            reserve(scheduleId);
+            registration.setSchedule(scheduleRepository.findById(scheduleId).orElseThrow());
+        }
+        return registrationRepository.save(registration);
+    }
+
+    @Override
+    @Transactional
+    public Registration changeStatus(Registration registration, Registration.Status status) {
+        apply(registration, status);
+        return registrationRepository.save(registration);
+    }
+
+    @Override
+    @Transactional
+    public void changeStatus(Collection<Registration> registrations, Registration.Status status) {
+        for (Registration registration : registrations) {
+            apply(registration, status);
+        }
+        registrationRepository.saveAll(registrations);
+    }
+
+    @Override
+    @Transactional
+    public void reschedule(Registration registration, LocalDateTime appointmentTime) {
+        Schedule current = registration.getSchedule();
+        Long doctorId = registration.getDoctor() != null ? registration.getDoctor().getId() : null;
+        if (current != null && doctorId != null && scheduleRepository.covers(current.getId(), doctorId,
+                appointmentTime.toLocalDate(), appointmentTime.toLocalTime())) {
+            registration.setAppointmentTime(appointmentTime);
+            return;
+        }
+        Long targetId = null;
+        if (doctorId != null) {
+            List<Long> ids = scheduleRepository.findCoveringScheduleIds(doctorId,
+                    appointmentTime.toLocalDate(), appointmentTime.toLocalTime());
+            targetId = ids.isEmpty() ? null : ids.get(0);
+        }
+        if (current != null && targetId == null) {
+            throw new IllegalArgumentException("新的预约时间不在该医生的排班内");
+        }
+        String status = registration.getId() != null ? registrationRepository.lockStatus(registration.getId()) : null;
+        boolean holdsSlot = status != null && !Registration.Status.CANCELLED.name().equals(status);
+        if (holdsSlot) {
+            // 先占用新排班，已满时原号源保持不变
+            if (targetId != null) {
+                reserve(targetId);
+            }
+            if (current != null) {
+                release(current.getId());
+            }
+        }
+        registration.setSchedule(targetId != null ? scheduleRepository.findById(targetId).orElseThrow() : null);
+        registration.setAppointmentTime(appointmentTime);
+    }
+
+    private void apply(Registration registration, Registration.Status status) {
+        if (registration.getId() != null && registration.getSchedule() != null) {
+            String current = registrationRepository.lockStatus(registration.getId());
+            boolean wasCancelled = current == null || Registration.Status.CANCELLED.name().equals(current);
+            boolean cancelled = status == Registration.Status.CANCELLED;
+            Long scheduleId = registration.getSchedule().getId();
+            if (!wasCancelled && cancelled) {
+                release(scheduleId);
+            } else if (wasCancelled && !cancelled) {
+                reserve(scheduleId);
+            }
+        }
+        registration.setStatus(status);
+    }
+
+    private void release(Long scheduleId) {
+        slotInventory.release(scheduleId, () -> scheduleRepository.releaseSlot(scheduleId,
+                Schedule.ScheduleStatus.OPEN, Schedule.ScheduleStatus.FULL, LocalDateTime.now()));
+        // 此时已持有挂号行与排班行，不能再锁候补患者；提交后再转正
+        waitlistService.promoteAfterCommit(scheduleId);
+    }
+
+    private void reserve(Long scheduleId) {
+        boolean reserved = slotInventory.reserve(scheduleId, () -> scheduleRepository.reserveSlot(scheduleId,
+                Schedule.ScheduleStatus.OPEN, Schedule.ScheduleStatus.FULL, LocalDateTime.now()) > 0);
+        if (!reserved) {
+            throw new SlotUnavailableException("该排班号源已满或未开放");
+        }
+    }
+
+    // 在占用号源之前校验，避免按客户端传入的排班占用其他医生或其他时段的号源
+    private void checkSchedule(Registration registration, Long scheduleId) {
+        if (registration.getDoctor() == null || registration.getDoctor().getId() == null
+                || registration.getAppointmentTime() == null) {
+            throw new IllegalArgumentException("指定排班时必须填写医生和预约时间");
+        }
+        LocalDateTime appointmentTime = registration.getAppointmentTime();
+        if (!scheduleRepository.covers(scheduleId, registration.getDoctor().getId(),
+                appointmentTime.toLocalDate(), appointmentTime.toLocalTime())) {
+            throw new IllegalArgumentException("排班与挂号医生或预约时间不符");
+        }
+    }
+
+    private Long resolveScheduleId(Registration registration) {
+        if (registration.getSchedule() != null && registration.getSchedule().getId() != null) {
+            return registration.getSchedule().getId();
+        }
+        if (registration.getDoctor() == null || registration.getAppointmentTime() == null) {
+            return null;
+        }
+        LocalDateTime appointmentTime = registration.getAppointmentTime();
+        List<Long> ids = scheduleRepository.findCoveringScheduleIds(registration.getDoctor().getId(),
+                appointmentTime.toLocalDate(), appointmentTime.toLocalTime());
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+}
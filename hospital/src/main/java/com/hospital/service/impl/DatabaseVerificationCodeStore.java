@@ -0,0 +1,87 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.VerificationCode;
+import com.hospital.exception.ServiceBusyException;
+import com.hospital.repository.VerificationCodeRepository;
+import com.hospital.service.VerificationCodeStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 基于 verification_code 表的验证码存储，多个应用节点共享。
+ * 每一步都是单条条件更新，不依赖行锁：发送用 INSERT IGNORE 防止并发重复发送，
+ * 校验先原子地占用尝试次数再比对，通过后以条件删除消费验证码。
+ */
+@Component
+@ConditionalOnProperty(name = "security.verification-code.store", havingValue = "database")
+public class DatabaseVerificationCodeStore implements VerificationCodeStore {
+
+    @Autowired
+    private VerificationCodeRepository verificationCodeRepository;
+
+    @Value("${security.verification-code.max-entries:10000}")
+    private int maxEntries;
+
+    @Override
+    public Duration issue(String key, String code, LocalDateTime expireAt,
+                          LocalDateTime now, Duration resendInterval) {
+        verificationCodeRepository.deleteResendable(key, now.minus(resendInterval));
+        if (verificationCodeRepository.count() >= maxEntries) {
+            verificationCodeRepository.deleteExpired(now);
+            if (verificationCodeRepository.count() >= maxEntries) {
+                throw new ServiceBusyException("验证码请求过多，请稍后再试");
+            }
+        }
+        if (verificationCodeRepository.insertIfAbsent(key, code, expireAt, now) == 1) {
+            return Duration.ZERO;
+        }
+        Optional<VerificationCode> existing = verificationCodeRepository.findById(key);
+        if (existing.isEmpty()) {
+            // 旧记录在两次语句之间被清理，按刚发送处理，由调用方提示稍后重试
+            return resendInterval;
+        }
+        Duration wait = resendInterval.minus(Duration.between(existing.get().getSentAt(), now));
+        return wait.isNegative() || wait.isZero() ? Duration.ofSeconds(1) : wait;
+    }
+
+    @Override
+    public VerifyResult verify(String key, String code, LocalDateTime now, int maxAttempts) {
+        if (verificationCodeRepository.incrementAttempts(key, maxAttempts, now) == 0) {
+            Optional<VerificationCode> existing = verificationCodeRepository.findById(key);
+            if (existing.isEmpty()) {
+                return VerifyResult.NOT_FOUND;
+            }
+            if (existing.get().getExpireAt().isBefore(now)) {
+                verificationCodeRepository.deleteById(key);
+                return VerifyResult.EXPIRED;
+            }
+            return VerifyResult.LOCKED;
+        }
+        Optional<VerificationCode> stored = verificationCodeRepository.findById(key);
+        if (stored.isEmpty()) {
+            return VerifyResult.NOT_FOUND;
+        }
+        if (!InMemoryVerificationCodeStore.codeEquals(stored.get().getCode(), code)) {
+            return VerifyResult.MISMATCH;
+        }
+        return verificationCodeRepository.consume(key, stored.get().getCode()) == 1
+                ? VerifyResult.MATCHED
+                : VerifyResult.NOT_FOUND;
+    }
+
+    @Override
+    public int purgeExpired(LocalDateTime now) {
+        return verificationCodeRepository.deleteExpired(now);
+    }
+
+    @Override
+    public long size() {
+        return verificationCodeRepository.count();
+    }
+}
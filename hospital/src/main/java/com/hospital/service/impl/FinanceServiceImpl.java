@@ -0,0 +1,145 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Department;
+import com.hospital.entity.Registration;
+import com.hospital.model.FinanceAmount;
+import com.hospital.model.FinanceSummaryDto;
+import com.hospital.repository.DepartmentRepository;
+import com.hospital.repository.DoctorRepository;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.service.FinanceService;
+import com.hospital.service.RegistrationCounterService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 费用汇总。明细求和交给数据库按维度分组完成，这里只把分组结果换算成分（long）再按各维度累加，
+ * 不对每条挂号创建 BigDecimal；金额只在输出时转换回元。
+ */
+@Service
+public class FinanceServiceImpl implements FinanceService {
+
+    private static final long MAX_RANGE_DAYS = 731;
+
+    private static final int COUNT = 0;
+    private static final int REVENUE = 1;
+    private static final int OUTSTANDING = 2;
+    private static final int REFUNDED = 3;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Override
+    public FinanceSummaryDto getSummary(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("时间范围不合法");
+        }
+        if (to.toEpochDay() - from.toEpochDay() + 1 > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("时间跨度过大，最多查询 " + MAX_RANGE_DAYS + " 天");
+        }
+
+        long[] total = new long[4];
+        Map<LocalDate, long[]> byDay = new TreeMap<>();
+        Map<Long, long[]> byDepartment = new HashMap<>();
+        Map<Long, long[]> byDoctor = new HashMap<>();
+        Map<Registration.RegistrationType, long[]> byType = new TreeMap<>();
+
+        for (Object[] row : registrationRepository.sumFeesByDimension(from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+            LocalDate day = LocalDate.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+            Long departmentId = row[3] != null ? ((Number) row[3]).longValue() : RegistrationCounterService.UNASSIGNED_DEPARTMENT_ID;
+            Long doctorId = ((Number) row[4]).longValue();
+            Registration.RegistrationType type = row[5] != null ? (Registration.RegistrationType) row[5] : Registration.RegistrationType.REGULAR;
+            Registration.PaymentStatus paymentStatus = row[6] != null ? (Registration.PaymentStatus) row[6] : Registration.PaymentStatus.UNPAID;
+            boolean cancelled = row[7] == Registration.Status.CANCELLED;
+            long count = ((Number) row[8]).longValue();
+            long cents = toCents((BigDecimal) row[9]);
+
+            int bucket = switch (paymentStatus) {
+                case PAID -> REVENUE;
+                case REFUNDED -> REFUNDED;
+                case UNPAID -> cancelled ? -1 : OUTSTANDING;
+            };
+            accumulate(total, count, bucket, cents);
+            accumulate(byDay.computeIfAbsent(day, k -> new long[4]), count, bucket, cents);
+            accumulate(byDepartment.computeIfAbsent(departmentId, k -> new long[4]), count, bucket, cents);
+            accumulate(byDoctor.computeIfAbsent(doctorId, k -> new long[4]), count, bucket, cents);
+            accumulate(byType.computeIfAbsent(type, k -> new long[4]), count, bucket, cents);
+        }
+
+        Map<Long, String> departmentNames = new HashMap<>();
+        for (Department department : departmentRepository.findAll()) {
+            departmentNames.put(department.getId(), department.getName());
+        }
+        Map<Long, String> doctorNames = new HashMap<>();
+        for (Object[] doctor : doctorRepository.findIdNameAndDepartment()) {
+            doctorNames.put((Long) doctor[0], (String) doctor[1]);
+        }
+
+        FinanceSummaryDto summary = new FinanceSummaryDto();
+        summary.setFrom(from);
+        summary.setTo(to);
+        summary.setTotal(toAmount(null, null, total));
+        summary.setByDay(toAmounts(byDay, LocalDate::toString));
+        summary.setByDepartment(sortedByRevenue(toAmounts(byDepartment,
+                id -> departmentNames.getOrDefault(id, AdminStatsServiceImpl.UNASSIGNED_DEPARTMENT))));
+        summary.setByDoctor(sortedByRevenue(toAmounts(byDoctor, id -> doctorNames.get(id))));
+        summary.setByType(toAmounts(byType, Enum::name));
+        return summary;
+    }
+
+    /**
+     * 未支付但已取消的挂号只计入笔数，不计入任何金额。
+     */
+    private static void accumulate(long[] cells, long count, int bucket, long cents) {
+        cells[COUNT] += count;
+        if (bucket >= 0) {
+            cells[bucket] += cents;
+        }
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static <K> List<FinanceAmount> toAmounts(Map<K, long[]> cells, Function<K, String> label) {
+        List<FinanceAmount> amounts = new ArrayList<>(cells.size());
+        cells.forEach((key, values) -> amounts.add(toAmount(String.valueOf(key), label.apply(key), values)));
+        return amounts;
+    }
+
+    private static List<FinanceAmount> sortedByRevenue(List<FinanceAmount> amounts) {
+        amounts.sort(Comparator.comparing(FinanceAmount::getRevenue).reversed());
+        return amounts;
+    }
+
+    private static FinanceAmount toAmount(String key, String label, long[] values) {
+        FinanceAmount amount = new FinanceAmount();
+        amount.setKey(key);
+        amount.setLabel(label);
+        amount.setRegistrations(values[COUNT]);
+        amount.setRevenue(BigDecimal.valueOf(values[REVENUE], 2));
+        amount.setOutstanding(BigDecimal.valueOf(values[OUTSTANDING], 2));
+        amount.setRefunded(BigDecimal.valueOf(values[REFUNDED], 2));
+        return amount;
+    }
+}
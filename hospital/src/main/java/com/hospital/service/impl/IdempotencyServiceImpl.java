@@ -0,0 +1,182 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.IdempotencyRecord;
+import com.hospital.repository.IdempotencyRecordRepository;
+import com.hospital.service.IdempotencyService;
+import com.hospital.util.BoundedTtlCache;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 同一节点上的重复请求通过 CompletableFuture 等待首次执行的结果；
+ * 跨节点由 idempotency_record 表的主键保证只有一个请求执行，其余请求轮询该表。
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Value("${idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${idempotency.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    @Value("${idempotency.in-progress-timeout:2m}")
+    private Duration inProgressTimeout;
+
+    private BoundedTtlCache<String, StoredResponse> responses;
+
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        this.responses = new BoundedTtlCache<>("idempotency", cacheSize, ttl);
+    }
+
+    @Override
+    public Claim claim(String recordKey, String requestHash) {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            StoredResponse cached = responses.getIfPresent(recordKey);
+            if (cached != null) {
+                return replay(cached, requestHash);
+            }
+
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(recordKey, mine);
+            if (running != null) {
+                StoredResponse response = await(running, deadline);
+                if (response != null) {
+                    return replay(response, requestHash);
+                }
+                if (System.nanoTime() >= deadline) {
+                    return new Claim(Outcome.IN_PROGRESS, null);
+                }
+                // 首次执行失败已释放，重新争用
+                continue;
+            }
+
+            try {
+                Claim claim = claimDurable(recordKey, requestHash, deadline);
+                if (claim.outcome() != Outcome.EXECUTE) {
+                    finish(recordKey, mine, claim.outcome() == Outcome.REPLAY ? claim.response() : null);
+                }
+                return claim;
+            } catch (RuntimeException ex) {
+                finish(recordKey, mine, null);
+                throw ex;
+            }
+        }
+    }
+
+    @Override
+    public void complete(String recordKey, StoredResponse response) {
+        try {
+            recordRepository.complete(recordKey, IdempotencyRecord.Status.COMPLETED, response.status(),
+                    response.contentType(), new String(response.body(), StandardCharsets.UTF_8), LocalDateTime.now());
+        } catch (RuntimeException ex) {
+            // 本节点缓存仍可重放；其他节点在处理中超时后会重新执行
+            log.warn("Failed to persist idempotent response {}", recordKey, ex);
+        }
+        responses.put(recordKey, response);
+        finish(recordKey, inFlight.get(recordKey), response);
+    }
+
+    @Override
+    public void release(String recordKey) {
+        try {
+            recordRepository.release(recordKey, IdempotencyRecord.Status.IN_PROGRESS);
+        } finally {
+            finish(recordKey, inFlight.get(recordKey), null);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval:600000}")
+    public void purgeExpired() {
+        int purged = recordRepository.deleteExpired(LocalDateTime.now());
+        responses.cleanUp();
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    private Claim claimDurable(String recordKey, String requestHash, long deadline) {
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plus(ttl);
+            if (recordRepository.insertIfAbsent(recordKey, requestHash, now, expiresAt) == 1
+                    || recordRepository.takeOver(recordKey, requestHash, IdempotencyRecord.Status.IN_PROGRESS,
+                    now, now.minus(inProgressTimeout), expiresAt) == 1) {
+                return new Claim(Outcome.EXECUTE, null);
+            }
+            IdempotencyRecord record = recordRepository.findById(recordKey).orElse(null);
+            if (record != null && record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+                StoredResponse response = new StoredResponse(record.getRequestHash(), record.getResponseStatus(),
+                        record.getContentType(), record.getResponseBody().getBytes(StandardCharsets.UTF_8));
+                responses.put(recordKey, response);
+                return replay(response, requestHash);
+            }
+            if (record != null && !record.getRequestHash().equals(requestHash)) {
+                return new Claim(Outcome.MISMATCH, null);
+            }
+            if (System.nanoTime() >= deadline) {
+                return new Claim(Outcome.IN_PROGRESS, null);
+            }
+            // 其他节点正在处理（或刚释放），稍后再查
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return new Claim(Outcome.IN_PROGRESS, null);
+            }
+        }
+    }
+
+    private static Claim replay(StoredResponse response, String requestHash) {
+        if (!response.requestHash().equals(requestHash)) {
+            return new Claim(Outcome.MISMATCH, null);
+        }
+        return new Claim(Outcome.REPLAY, response);
+    }
+
+    private static StoredResponse await(CompletableFuture<StoredResponse> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void finish(String recordKey, CompletableFuture<StoredResponse> future, StoredResponse response) {
+        if (future != null) {
+            inFlight.remove(recordKey, future);
+            future.complete(response);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.hospital.service.impl;
+
+import com.hospital.exception.ServiceBusyException;
+import com.hospital.service.VerificationCodeStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 单节点内存验证码存储，容量有界，所有操作在同一把锁内完成（找回密码请求量很小）。
+ */
+@Component
+@ConditionalOnProperty(name = "security.verification-code.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryVerificationCodeStore implements VerificationCodeStore {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    @Value("${security.verification-code.max-entries:10000}")
+    private int maxEntries;
+
+    @Override
+    public synchronized Duration issue(String key, String code, LocalDateTime expireAt,
+                                       LocalDateTime now, Duration resendInterval) {
+        Entry existing = entries.get(key);
+        if (existing != null && existing.sentAt.isAfter(now.minus(resendInterval))) {
+            return resendInterval.minus(Duration.between(existing.sentAt, now));
+        }
+        if (existing == null && entries.size() >= maxEntries) {
+            purgeExpired(now);
+            if (entries.size() >= maxEntries) {
+                throw new ServiceBusyException("验证码请求过多，请稍后再试");
+            }
+        }
+        entries.put(key, new Entry(code, expireAt, now));
+        return Duration.ZERO;
+    }
+
+    @Override
+    public synchronized VerifyResult verify(String key, String code, LocalDateTime now, int maxAttempts) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return VerifyResult.NOT_FOUND;
+        }
+        if (entry.expireAt.isBefore(now)) {
+            entries.remove(key);
+            return VerifyResult.EXPIRED;
+        }
+        if (entry.attempts >= maxAttempts) {
+            return VerifyResult.LOCKED;
+        }
+        entry.attempts++;
+        if (!codeEquals(entry.code, code)) {
+            return VerifyResult.MISMATCH;
+        }
+        entries.remove(key);
+        return VerifyResult.MATCHED;
+    }
+
+    @Override
+    public synchronized int purgeExpired(LocalDateTime now) {
+        int removed = 0;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expireAt.isBefore(now)) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public synchronized long size() {
+        return entries.size();
+    }
+
+    static boolean codeEquals(String expected, String actual) {
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), actual.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Entry {
+        private final String code;
+        private final LocalDateTime expireAt;
+        private final LocalDateTime sentAt;
+        private int attempts;
+
+        Entry(String code, LocalDateTime expireAt, LocalDateTime sentAt) {
+            this.code = code;
+            this.expireAt = expireAt;
+            this.sentAt = sentAt;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.MailOutbox;
+import com.hospital.repository.MailOutboxRepository;
+import com.hospital.service.MailOutboxService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 mail_outbox 表的异步发件箱。
+ * 请求线程只负责写入一行记录；定时轮询认领到期邮件，按批交给固定大小的工作线程池，
+ * 同一批邮件通过 {@link JavaMailSender#send(SimpleMailMessage...)} 在一次 SMTP 会话内发出。
+ * 发送失败按指数退避重试，超过最大次数标记为 FAILED；
+ * 带过期时间的邮件在下次重试会晚于过期时间时直接标记为 EXPIRED，发出或放弃后清除正文。
+ */
+@Service
+public class MailOutboxServiceImpl implements MailOutboxService {
+
+    private static final Logger log = LoggerFactory.getLogger(MailOutboxServiceImpl.class);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    static final String REDACTED_BODY = "[已清除]";
+
+    @Autowired
+    private MailOutboxRepository mailOutboxRepository;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Value("${spring.mail.username:}")
+    private String mailFrom;
+
+    @Value("${mail.outbox.workers:2}")
+    private int workers;
+
+    @Value("${mail.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.initial-backoff:30s}")
+    private Duration initialBackoff;
+
+    @Value("${mail.outbox.max-backoff:30m}")
+    private Duration maxBackoff;
+
+    @Value("${mail.outbox.stale-after:5m}")
+    private Duration staleAfter;
+
+    @Value("${mail.outbox.sent-retention:7d}")
+    private Duration sentRetention;
+
+    private ExecutorService executor;
+
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "mail-outbox-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void enqueue(String to, String subject, String text) {
+        enqueue(to, subject, text, null);
+    }
+
+    @Override
+    public void enqueue(String to, String subject, String text, LocalDateTime expiresAt) {
+        MailOutbox mail = new MailOutbox();
+        mail.setRecipient(to);
+        mail.setSubject(subject);
+        mail.setBody(text);
+        mail.setExpiresAt(expiresAt);
+        mailOutboxRepository.save(mail);
+        enqueued.increment();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval:1000}")
+    public int dispatchDue() {
+        if (!dispatching.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            // 每个空闲工作线程认领一批，正在发送的批次不重复认领
+            int idleWorkers = workers - activeWorkers.get();
+            if (idleWorkers <= 0) {
+                return 0;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            int dropped = mailOutboxRepository.expirePending(now, REDACTED_BODY);
+            if (dropped > 0) {
+                expired.add(dropped);
+            }
+            List<Long> dueIds = mailOutboxRepository.findDueIds(now, PageRequest.of(0, idleWorkers * batchSize));
+            List<Long> claimed = new ArrayList<>(dueIds.size());
+            for (Long id : dueIds) {
+                if (mailOutboxRepository.claim(id, now) == 1) {
+                    claimed.add(id);
+                }
+            }
+            for (int from = 0; from < claimed.size(); from += batchSize) {
+                List<Long> batch = claimed.subList(from, Math.min(claimed.size(), from + batchSize));
+                submit(mailOutboxRepository.findAllById(batch));
+            }
+            return claimed.size();
+        } finally {
+            dispatching.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.maintenance-interval:60000}")
+    public void maintain() {
+        LocalDateTime now = LocalDateTime.now();
+        int reclaimed = mailOutboxRepository.reclaimStale(now.minus(staleAfter));
+        if (reclaimed > 0) {
+            log.warn("Reclaimed {} stale outbox mails", reclaimed);
+        }
+        mailOutboxRepository.deleteSentBefore(now.minus(sentRetention));
+        mailOutboxRepository.deleteExpiredBefore(now.minus(sentRetention));
+    }
+
+    @Override
+    public MailOutboxStats stats() {
+        return new MailOutboxStats(
+                mailOutboxRepository.countByStatus(MailOutbox.Status.PENDING),
+                mailOutboxRepository.countByStatus(MailOutbox.Status.SENDING),
+                mailOutboxRepository.countByStatus(MailOutbox.Status.FAILED),
+                mailOutboxRepository.countByStatus(MailOutbox.Status.EXPIRED),
+                enqueued.sum(),
+                sent.sum(),
+                retried.sum(),
+                deadLettered.sum(),
+                expired.sum(),
+                batches.sum(),
+                activeWorkers.get()
+        );
+    }
+
+    private void submit(List<MailOutbox> batch) {
+        activeWorkers.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    sendBatch(batch);
+                } finally {
+                    activeWorkers.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // 应用正在关闭，已认领的邮件由 maintain() 在超时后重新放回队列
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    void sendBatch(List<MailOutbox> batch) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        Map<SimpleMailMessage, MailOutbox> byMessage = new IdentityHashMap<>();
+        for (MailOutbox mail : batch) {
+            // 认领后才过期的邮件（如重新认领的超时邮件）不再发送
+            if (isExpired(mail, startedAt)) {
+                markExpired(mail);
+            } else {
+                byMessage.put(toMessage(mail), mail);
+            }
+        }
+        if (byMessage.isEmpty()) {
+            return;
+        }
+        SimpleMailMessage[] messages = byMessage.keySet().toArray(new SimpleMailMessage[0]);
+        batches.increment();
+
+        Map<Object, Exception> failures = Map.of();
+        MailException batchFailure = null;
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException ex) {
+            failures = ex.getFailedMessages();
+            if (failures.isEmpty()) {
+                batchFailure = ex;
+            }
+        } catch (MailException ex) {
+            batchFailure = ex;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> sentIds = new ArrayList<>(batch.size());
+        for (Map.Entry<SimpleMailMessage, MailOutbox> entry : byMessage.entrySet()) {
+            Exception failure = batchFailure != null ? batchFailure : failures.get(entry.getKey());
+            if (failure == null) {
+                sentIds.add(entry.getValue().getId());
+            } else {
+                markFailed(entry.getValue(), failure, now);
+            }
+        }
+        if (!sentIds.isEmpty()) {
+            mailOutboxRepository.markSent(sentIds, now);
+            mailOutboxRepository.redactExpiring(sentIds, REDACTED_BODY);
+            sent.add(sentIds.size());
+        }
+    }
+
+    private void markFailed(MailOutbox mail, Exception failure, LocalDateTime now) {
+        int attempts = mail.getAttempts() + 1;
+        mail.setAttempts(attempts);
+        mail.setLastError(truncate(failure.getMessage()));
+        if (attempts >= maxAttempts) {
+            mail.setStatus(MailOutbox.Status.FAILED);
+            if (mail.getExpiresAt() != null) {
+                mail.setBody(REDACTED_BODY);
+            }
+            deadLettered.increment();
+            log.error("Giving up on outbox mail {} to {} after {} attempts", mail.getId(), mail.getRecipient(), attempts, failure);
+        } else if (isExpired(mail, now.plus(backoff(attempts)))) {
+            // 下次重试时内容已失效，不再重试
+            markExpired(mail);
+            log.warn("Outbox mail {} failed (attempt {}) and expires before the next retry: {}", mail.getId(), attempts, failure.getMessage());
+            return;
+        } else {
+            mail.setStatus(MailOutbox.Status.PENDING);
+            mail.setNextAttemptAt(now.plus(backoff(attempts)));
+            retried.increment();
+            log.warn("Outbox mail {} failed (attempt {}): {}", mail.getId(), attempts, failure.getMessage());
+        }
+        mailOutboxRepository.save(mail);
+    }
+
+    private void markExpired(MailOutbox mail) {
+        mail.setStatus(MailOutbox.Status.EXPIRED);
+        mail.setBody(REDACTED_BODY);
+        expired.increment();
+        mailOutboxRepository.save(mail);
+    }
+
+    private static boolean isExpired(MailOutbox mail, LocalDateTime at) {
+        return mail.getExpiresAt() != null && !mail.getExpiresAt().isAfter(at);
+    }
+
+    Duration backoff(int attempts) {
+        // initial * 2^(attempts-1)，上限 maxBackoff
+        int shift = Math.min(attempts - 1, 20);
+        Duration delay = initialBackoff.multipliedBy(1L << shift);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private SimpleMailMessage toMessage(MailOutbox mail) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        if (StringUtils.hasText(mailFrom)) {
+            message.setFrom(mailFrom);
+        }
+        message.setTo(mail.getRecipient());
+        message.setSubject(mail.getSubject());
+        message.setText(mail.getBody());
+        return message;
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
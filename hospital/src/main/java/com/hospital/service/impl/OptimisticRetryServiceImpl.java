@@ -0,0 +1,81 @@
+package com.hospital.service.impl;
+
+import com.hospital.exception.ConcurrentUpdateException;
+import com.hospital.service.OptimisticRetryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 退避时间为 [0, min(max-backoff, initial-backoff × 2^(n-1))) 内的随机值（full jitter），
+ * 避免冲突双方按相同节奏重试再次相撞。
+ * 失败的尝试回滚时 Spring 会清空预绑定（open-in-view）的 EntityManager，下次尝试读到的是数据库最新值。
+ */
+@Service
+public class OptimisticRetryServiceImpl implements OptimisticRetryService {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryServiceImpl.class);
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${concurrency.retry.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${concurrency.retry.initial-backoff:10ms}")
+    private Duration initialBackoff;
+
+    @Value("${concurrency.retry.max-backoff:200ms}")
+    private Duration maxBackoff;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public <T> T execute(Supplier<T> action, Supplier<?> currentState) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException ex) {
+                if (attempt >= Math.max(1, maxAttempts)) {
+                    log.info("Optimistic lock conflict after {} attempts: {}", attempt, ex.getMessage());
+                    Object current = transactionTemplate.execute(status -> currentState.get());
+                    throw new ConcurrentUpdateException("数据已被其他请求修改，请刷新后重试", current);
+                }
+                log.debug("Optimistic lock conflict on attempt {}, retrying", attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoff.toNanos(), initialBackoff.toNanos() << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException("重试被中断", null);
+        }
+    }
+}
@@ -2,49 +2,54 @@ package com.hospital.service.impl;
 
 import com.hospital.entity.User;
 import com.hospital.repository.UserRepository;
+import com.hospital.security.CustomUserDetailsService;
+import com.hospital.security.UserSecurityVersionRegistry;
+import com.hospital.service.MailOutboxService;
 import com.hospital.service.PasswordResetService;
+import com.hospital.service.VerificationCodeStore;
+import com.hospital.service.VerificationCodeStore.VerifyResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.MailException;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class PasswordResetServiceImpl implements PasswordResetService {
 
-    private final JavaMailSender mailSender;
+    private final MailOutboxService mailOutboxService;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-
-    @Value("${spring.mail.username}")
-    private String mailFrom;
+    private final UserSecurityVersionRegistry securityVersionRegistry;
+    private final CustomUserDetailsService userDetailsService;
+    private final VerificationCodeStore codeStore;
 
     private static final Duration CODE_TTL = Duration.ofMinutes(10);
     private static final Duration RESEND_INTERVAL = Duration.ofSeconds(60);
-    private final Map<String, VerificationCode> codeCache = new ConcurrentHashMap<>();
-    private final Random random = new Random();
+    private final SecureRandom random = new SecureRandom();
+
+    // 同一验证码允许的最大校验次数，超过后作废，需重新获取
+    @Value("${security.verification-code.max-attempts:5}")
+    private int maxAttempts;
 
     @Autowired
-    public PasswordResetServiceImpl(JavaMailSender mailSender,
+    public PasswordResetServiceImpl(MailOutboxService mailOutboxService,
                                     UserRepository userRepository,
-                                    PasswordEncoder passwordEncoder) {
-        this.mailSender = mailSender;
+                                    PasswordEncoder passwordEncoder,
+                                    UserSecurityVersionRegistry securityVersionRegistry,
+                                    CustomUserDetailsService userDetailsService,
+                                    VerificationCodeStore codeStore) {
+        this.mailOutboxService = mailOutboxService;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.securityVersionRegistry = securityVersionRegistry;
+        this.userDetailsService = userDetailsService;
+        this.codeStore = codeStore;
     }
 
     @Override
@@ -66,15 +71,13 @@ public class PasswordResetServiceImpl implements PasswordResetService {
 
         String key = email.trim().toLowerCase();
         LocalDateTime now = LocalDateTime.now();
-        VerificationCode existing = codeCache.get(key);
-        if (existing != null && existing.sentAt().isAfter(now.minus(RESEND_INTERVAL))) {
-            long waitSeconds = RESEND_INTERVAL.minus(Duration.between(existing.sentAt(), now)).toSeconds();
+        String code = String.format("%06d", random.nextInt(1_000_000));
+        Duration wait = codeStore.issue(key, code, now.plus(CODE_TTL), now, RESEND_INTERVAL);
+        if (!wait.isZero()) {
+            long waitSeconds = Math.max(1, wait.toSeconds());
             throw new IllegalArgumentException("验证码发送过于频繁，请稍后再试（" + waitSeconds + "秒）");
         }
-
-        String code = String.format("%06d", random.nextInt(1_000_000));
-        codeCache.put(key, new VerificationCode(code, now.plus(CODE_TTL), now));
-        sendEmail(email.trim(), code);
+        sendEmail(email.trim(), code, now.plus(CODE_TTL));
     }
 
     @Override
@@ -95,66 +98,35 @@ public class PasswordResetServiceImpl implements PasswordResetService {
         }
 
         String key = email.trim().toLowerCase();
-        VerificationCode verificationCode = codeCache.get(key);
-        if (verificationCode == null) {
-            throw new IllegalArgumentException("请先获取验证码");
-        }
-
-        LocalDateTime now = LocalDateTime.now();
-        if (verificationCode.expireAt().isBefore(now)) {
-            codeCache.remove(key);
-            throw new IllegalArgumentException("验证码已失效，请重新获取");
-        }
-
-        if (!verificationCode.code().equals(code.trim())) {
-            throw new IllegalArgumentException("验证码不正确");
+        VerifyResult result = codeStore.verify(key, code.trim(), LocalDateTime.now(), maxAttempts);
+        switch (result) {
+            case NOT_FOUND -> throw new IllegalArgumentException("请先获取验证码");
+            case EXPIRED -> throw new IllegalArgumentException("验证码已失效，请重新获取");
+            case LOCKED -> throw new IllegalArgumentException("验证码错误次数过多，请重新获取");
+            case MISMATCH -> throw new IllegalArgumentException("验证码不正确");
+            case MATCHED -> {
+            }
         }
 
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.bumpSecurityVersion();
         userRepository.save(user);
-        codeCache.remove(key);
+        userDetailsService.evictUser(user.getUsername());
+        securityVersionRegistry.invalidate(user.getId());
     }
 
-    private void sendEmail(String to, String code) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        if (StringUtils.hasText(mailFrom)) {
-            message.setFrom(mailFrom);
-        }
-        message.setTo(to);
-        message.setSubject("医院挂号系统密码重置验证码");
-        message.setText("您好，您的验证码为：" + code + "，有效期为" + CODE_TTL.toMinutes() + "分钟。若非本人操作，请忽略该邮件。");
-
-        try {
-            mailSender.send(message);
-        } catch (MailException ex) {
-            logError("发送邮箱验证码失败", ex);
-            throw new IllegalArgumentException("验证码发送失败，请检查邮箱配置后重试");
-        }
-    }
-
-    private void logError(String context, Exception ex) {
-        try {
-            Path logPath = Path.of("ERROR.txt");
-            StringWriter sw = new StringWriter();
-            ex.printStackTrace(new PrintWriter(sw));
-            String content = String.format(
-                    "[%s] %s%nMessage: %s%n%s%n",
-                    LocalDateTime.now(),
-                    context,
-                    ex.getMessage(),
-                    sw.toString()
-            );
-            Files.writeString(
-                    logPath,
-                    content,
-                    StandardOpenOption.CREATE,
-                    StandardOpenOption.APPEND
-            );
-        } catch (Exception ignore) {
-            // ignore logging failures
-        }
+    @Scheduled(fixedDelayString = "${security.verification-code.sweep-interval:60000}")
+    public void purgeExpiredCodes() {
+        codeStore.purgeExpired(LocalDateTime.now());
     }
 
-    private record VerificationCode(String code, LocalDateTime expireAt, LocalDateTime sentAt) {
+    private void sendEmail(String to, String code, LocalDateTime expiresAt) {
+        // 只写入发件箱即返回，SMTP 的耗时与失败重试都不再占用请求线程
+        mailOutboxService.enqueue(
+                to,
+                "医院挂号系统密码重置验证码",
+                "您好，您的验证码为：" + code + "，有效期为" + CODE_TTL.toMinutes() + "分钟。若非本人操作，请忽略该邮件。",
+                expiresAt
+        );
     }
 }
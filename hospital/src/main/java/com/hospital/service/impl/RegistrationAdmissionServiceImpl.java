@@ -0,0 +1,131 @@
+package com.hospital.service.impl;
+
+import com.hospital.exception.ServiceBusyException;
+import com.hospital.exception.TooManyRequestsException;
+import com.hospital.model.AdmissionTicketDto;
+import com.hospital.service.RegistrationAdmissionService;
+import com.hospital.util.AdmissionQueue;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+@Service
+public class RegistrationAdmissionServiceImpl implements RegistrationAdmissionService {
+
+    private static final long MAX_POLL_AFTER_SECONDS = 10;
+
+    @Value("${registration.admission.enabled:false}")
+    private boolean enabled;
+
+    @Value("${registration.admission.capacity:500000}")
+    private int capacity;
+
+    @Value("${registration.admission.rate-per-second:50}")
+    private double ratePerSecond;
+
+    @Value("${registration.admission.burst:50}")
+    private int burst;
+
+    @Value("${registration.admission.poll-timeout:30s}")
+    private Duration pollTimeout;
+
+    @Value("${registration.admission.admitted-ttl:2m}")
+    private Duration admittedTtl;
+
+    private AdmissionQueue queue;
+
+    @PostConstruct
+    void init() {
+        this.queue = new AdmissionQueue(capacity, ratePerSecond, burst, pollTimeout, admittedTtl, System::nanoTime);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public AdmissionTicketDto issueTicket() {
+        // 未开启排队时不会推进和清理队列，不能分配排队号，否则环形队列占满后永久返回 503
+        if (!enabled) {
+            return admitted(null);
+        }
+        AdmissionQueue.Ticket ticket = queue.issue();
+        if (ticket == null) {
+            throw new ServiceBusyException("排队人数已满，请稍后再试");
+        }
+        return toDto(ticket.getId(), ticket);
+    }
+
+    @Override
+    public AdmissionTicketDto getTicket(String ticketId) {
+        if (!enabled) {
+            return admitted(ticketId);
+        }
+        return toDto(ticketId, queue.poll(ticketId));
+    }
+
+    @Override
+    public void admit(String ticketId) {
+        if (!enabled) {
+            return;
+        }
+        if (ticketId == null || ticketId.isBlank()) {
+            throw new TooManyRequestsException("挂号高峰期，请先排队");
+        }
+        if (!queue.claim(ticketId)) {
+            throw new TooManyRequestsException("排队号尚未放行或已失效，请重新排队");
+        }
+    }
+
+    @Override
+    public void complete(String ticketId) {
+        if (enabled) {
+            queue.commit(ticketId);
+        }
+    }
+
+    @Override
+    public void release(String ticketId) {
+        if (enabled) {
+            queue.release(ticketId);
+        }
+    }
+
+    @Override
+    public AdmissionQueue.Stats stats() {
+        return queue.stats();
+    }
+
+    @Scheduled(fixedDelayString = "${registration.admission.tick-interval:100}")
+    public void advance() {
+        if (enabled) {
+            queue.advance();
+        }
+    }
+
+    private AdmissionTicketDto admitted(String ticketId) {
+        AdmissionTicketDto dto = new AdmissionTicketDto();
+        dto.setTicketId(ticketId);
+        dto.setStatus(AdmissionQueue.State.ADMITTED);
+        return dto;
+    }
+
+    private AdmissionTicketDto toDto(String ticketId, AdmissionQueue.Ticket ticket) {
+        AdmissionTicketDto dto = new AdmissionTicketDto();
+        dto.setTicketId(ticketId);
+        dto.setStatus(queue.stateOf(ticket));
+        if (dto.getStatus() == AdmissionQueue.State.WAITING) {
+            long position = queue.positionOf(ticket);
+            long wait = queue.estimatedWaitSeconds(position);
+            long maxPollAfter = Math.max(1, Math.min(MAX_POLL_AFTER_SECONDS, pollTimeout.toSeconds() / 3));
+            dto.setPosition(position);
+            dto.setEstimatedWaitSeconds(wait);
+            dto.setPollAfterSeconds(Math.max(1, Math.min(maxPollAfter, wait / 10)));
+        }
+        return dto;
+    }
+}
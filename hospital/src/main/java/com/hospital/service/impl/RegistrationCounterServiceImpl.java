@@ -0,0 +1,531 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.JobCheckpoint;
+import com.hospital.entity.Registration;
+import com.hospital.entity.RegistrationCounter;
+import com.hospital.repository.JobCheckpointRepository;
+import com.hospital.repository.RegistrationCounterRepository;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.service.RegistrationCounterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 挂号计数器的内存实现。
+ * 每个计数是一个 LongAdder（只增不减地累加正负增量，无锁），另记录已同步到计数表的值；
+ * 定时刷新时把两者之差写入表中，再把表中其他节点写入的增量合并回来。
+ * <p>
+ * 挂号事务在提交前取得读锁、应用增量后释放。重建与校准在可重复读事务中统计挂号表，
+ * 只在建立一致性快照的那一刻持有写锁（此时没有提交到一半的挂号），随后的全表统计不阻塞挂号写入：
+ * 快照之前提交的挂号及其增量、快照之后提交的挂号及其增量各自成对，不会重复也不会遗漏。
+ * 多节点校准时发起节点通过 job_checkpoint 中的栅栏让所有存活节点在同一时刻刷入增量并短暂停顿，
+ * 快照在全部节点停顿时建立，快照读到的计数表与挂号表因此对应同一批已提交的挂号。
+ */
+@Service
+public class RegistrationCounterServiceImpl implements RegistrationCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrationCounterServiceImpl.class);
+
+    private static final String DAY_PREFIX = "day:";
+    private static final String MONTH_PREFIX = "month:";
+    private static final String DEPARTMENT_PREFIX = "dept:";
+    private static final String STATUS_PREFIX = "status:";
+
+    // 合并其他节点增量时向前多读一段时间，容忍节点间的时钟偏差
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+
+    static final String RECONCILE_JOB_NAME = "registration-counter-reconcile";
+    static final String FENCE_JOB_NAME = "registration-counter-fence";
+    static final String NODE_JOB_PREFIX = "registration-counter-node:";
+
+    // 栅栏的停顿时刻比发起时刻晚一个刷新周期再多出的余量，保证各节点在停顿前至少刷新过一次、看到栅栏
+    private static final Duration FENCE_LEAD = Duration.ofSeconds(1);
+    private static final long FENCE_POLL_MILLIS = 20;
+    // 节点心跳记录保留时间，超过后视为已下线的节点记录被清理
+    private static final Duration NODE_RETENTION = Duration.ofDays(1);
+
+    @Autowired
+    private RegistrationCounterRepository counterRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${stats.registration-counters.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.registration-counters.flush-interval:5000}")
+    private long flushIntervalMillis;
+
+    @Value("${stats.registration-counters.reconcile-lease:10m}")
+    private Duration reconcileLease;
+
+    // 各节点停顿的最长时间，超时未全部停顿则本次校准取消
+    @Value("${stats.registration-counters.fence-timeout:10s}")
+    private Duration fenceTimeout;
+
+    private final String nodeJobName = NODE_JOB_PREFIX + UUID.randomUUID().toString().replace("-", "");
+
+    private TransactionTemplate snapshotTemplate;
+    private TransactionTemplate fenceTemplate;
+    private ScheduledExecutorService fenceExecutor;
+
+    // 本节点已安排停顿的栅栏时刻，避免同一栅栏重复停顿
+    private final AtomicReference<LocalDateTime> scheduledFence = new AtomicReference<>();
+
+    private final ConcurrentHashMap<String, Cell> cells = new ConcurrentHashMap<>();
+
+    // 读锁：应用挂号增量；写锁：从挂号表重建或校准计数
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+
+    // 以下字段只在持有 this 锁时访问
+    private LocalDateTime lastSyncAt;
+
+    @PostConstruct
+    void init() {
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        // 在快照事务内解除栅栏，需要独立提交
+        this.fenceTemplate = new TransactionTemplate(transactionManager);
+        this.fenceTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.fenceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "registration-counter-fence");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void apply(Snapshot before, Snapshot after) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private boolean locked;
+
+                // 提交前取得读锁，保证快照不会建立在已提交但增量尚未应用的时刻
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    rebuildLock.readLock().lock();
+                    locked = true;
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (!locked) {
+                        return;
+                    }
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            applyNow(before, after);
+                        }
+                    } finally {
+                        rebuildLock.readLock().unlock();
+                    }
+                }
+            });
+        } else {
+            rebuildLock.readLock().lock();
+            try {
+                applyNow(before, after);
+            } finally {
+                rebuildLock.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public long countForDay(LocalDate day) {
+        return value(DAY_PREFIX + day);
+    }
+
+    @Override
+    public long countForMonth(YearMonth month) {
+        return value(MONTH_PREFIX + month);
+    }
+
+    @Override
+    public Map<Long, Long> countByDepartment() {
+        Map<Long, Long> result = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            if (key.startsWith(DEPARTMENT_PREFIX)) {
+                long count = cell.total.sum();
+                if (count > 0) {
+                    result.put(Long.parseLong(key.substring(DEPARTMENT_PREFIX.length())), count);
+                }
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public Map<Registration.Status, Long> countByStatus() {
+        Map<Registration.Status, Long> result = new EnumMap<>(Registration.Status.class);
+        for (Registration.Status status : Registration.Status.values()) {
+            result.put(status, value(STATUS_PREFIX + status.name()));
+        }
+        return result;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!enabled) {
+            return;
+        }
+        checkpointRepository.createIfAbsent(nodeJobName, LocalDateTime.now());
+        ReentrantReadWriteLock.WriteLock cut = rebuildLock.writeLock();
+        cut.lock();
+        Map<String, Long> rebuilt;
+        try {
+            rebuilt = snapshotTemplate.execute(status -> {
+                // 第一次一致性读在写锁内建立快照
+                boolean empty = counterRepository.count() == 0;
+                if (empty) {
+                    // 快照之前应用的增量都已包含在重建结果中，之后的增量照常累加
+                    cells.clear();
+                }
+                cut.unlock();
+                return empty ? countFromRegistrations() : null;
+            });
+        } finally {
+            if (rebuildLock.isWriteLockedByCurrentThread()) {
+                cut.unlock();
+            }
+        }
+        if (rebuilt != null) {
+            LocalDateTime now = LocalDateTime.now();
+            rebuilt.forEach((key, value) -> counterRepository.insertIfAbsent(key, value, now));
+            log.info("Rebuilt {} registration counters from the registration table", rebuilt.size());
+        }
+        synchronized (this) {
+            lastSyncAt = LocalDateTime.now();
+            for (RegistrationCounter counter : counterRepository.findAll()) {
+                absorb(counter);
+            }
+            ready = true;
+        }
+        log.info("Registration counters loaded ({} keys)", cells.size());
+    }
+
+    /**
+     * 以挂号表为准校准计数，修正绕过实体回调的写入造成的偏差。
+     * 多节点时只有取得租约的节点发起；所有存活节点在栅栏时刻刷入增量并停顿，
+     * 快照建立后立即恢复，全表统计期间不阻塞挂号写入。
+     */
+    @Override
+    public int reconcile() {
+        if (!enabled || !ready) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        checkpointRepository.createIfAbsent(RECONCILE_JOB_NAME, now);
+        if (checkpointRepository.tryLock(RECONCILE_JOB_NAME, now, now.plus(reconcileLease)) != 1) {
+            throw new IllegalStateException("其他节点正在校准挂号计数");
+        }
+        try {
+            checkpointRepository.deleteByJobNameStartingWithAndUpdatedAtBefore(NODE_JOB_PREFIX, now.minus(NODE_RETENTION));
+            return applyCorrections(snapshotAtFence());
+        } finally {
+            checkpointRepository.release(RECONCILE_JOB_NAME, LocalDateTime.now());
+        }
+    }
+
+    @Scheduled(cron = "${stats.registration-counters.reconcile-cron:0 15 3 * * *}")
+    public void scheduledReconcile() {
+        if (!ready) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (IllegalStateException ex) {
+            log.info("Skip registration counter reconcile: {}", ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.registration-counters.flush-interval:5000}")
+    public void flush() {
+        if (!ready) {
+            return;
+        }
+        flushDeltas();
+        heartbeat();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        fenceExecutor.shutdownNow();
+        if (!ready) {
+            return;
+        }
+        try {
+            flushDeltas();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to flush registration counters on shutdown", ex);
+        }
+    }
+
+    private synchronized void flushDeltas() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, Cell> entry : cells.entrySet()) {
+            Cell cell = entry.getValue();
+            long delta = cell.total.sum() - cell.flushed;
+            if (delta != 0) {
+                counterRepository.addDelta(entry.getKey(), delta, now);
+                cell.flushed += delta;
+            }
+        }
+        // 合并其他节点刷入的增量
+        List<RegistrationCounter> changed = counterRepository.findByUpdatedAtGreaterThanEqual(lastSyncAt.minus(SYNC_OVERLAP));
+        for (RegistrationCounter counter : changed) {
+            absorb(counter);
+        }
+        lastSyncAt = now;
+    }
+
+    /**
+     * 刷新本节点心跳；有未到期的栅栏时安排在栅栏时刻停顿。
+     */
+    private void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        if (checkpointRepository.touch(nodeJobName, now) == 0) {
+            checkpointRepository.createIfAbsent(nodeJobName, now);
+        }
+        checkpointRepository.findById(FENCE_JOB_NAME)
+                .filter(fence -> fence.getWatermark() != null
+                        && fence.getLockedUntil() != null && fence.getLockedUntil().isAfter(now))
+                .ifPresent(fence -> schedulePause(fence.getWatermark(), fence.getLockedUntil()));
+    }
+
+    private void schedulePause(LocalDateTime pauseAt, LocalDateTime deadline) {
+        if (pauseAt.equals(scheduledFence.getAndSet(pauseAt))) {
+            return;
+        }
+        long delayMillis = Math.max(0, Duration.between(LocalDateTime.now(), pauseAt).toMillis());
+        fenceExecutor.schedule(() -> pause(pauseAt, deadline), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 持有写锁（挂号提交在 beforeCommit 处等待）刷入全部增量并确认，直到发起节点建立快照、解除栅栏或超时。
+     */
+    private void pause(LocalDateTime fenceAt, LocalDateTime deadline) {
+        ReentrantReadWriteLock.WriteLock lock = rebuildLock.writeLock();
+        lock.lock();
+        try {
+            flushDeltas();
+            checkpointRepository.completeRun(nodeJobName, fenceAt, LocalDateTime.now());
+            while (LocalDateTime.now().isBefore(deadline) && fenceHeld(fenceAt)) {
+                TimeUnit.MILLISECONDS.sleep(FENCE_POLL_MILLIS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            log.warn("Registration counter fence {} failed on this node", fenceAt, ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean fenceHeld(LocalDateTime fenceAt) {
+        return checkpointRepository.findById(FENCE_JOB_NAME)
+                .map(fence -> fence.getLockedUntil() != null && fenceAt.equals(fence.getWatermark()))
+                .orElse(false);
+    }
+
+    /**
+     * 设置栅栏，等所有存活节点停顿后建立一致性快照，读取计数表并立即解除栅栏，再在同一快照中统计挂号表。
+     */
+    private CounterSnapshot snapshotAtFence() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime pauseAt = now.plus(Duration.ofMillis(flushIntervalMillis)).plus(FENCE_LEAD)
+                .truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        LocalDateTime deadline = pauseAt.plus(fenceTimeout);
+        checkpointRepository.createIfAbsent(FENCE_JOB_NAME, now);
+        checkpointRepository.arm(FENCE_JOB_NAME, pauseAt, deadline, now);
+        try {
+            // 本节点直接安排停顿，不依赖可能正被本方法占用的定时任务线程
+            schedulePause(pauseAt, deadline);
+            awaitPaused(pauseAt, deadline);
+            return snapshotTemplate.execute(status -> {
+                // 第一次一致性读在所有节点停顿时建立快照：之前提交的挂号增量都已刷入计数表，之后提交的都不在快照中
+                Map<String, Long> stored = new HashMap<>();
+                for (RegistrationCounter counter : counterRepository.findAll()) {
+                    stored.put(counter.getCounterKey(), counter.getCounterValue() != null ? counter.getCounterValue() : 0L);
+                }
+                releaseFence();
+                return new CounterSnapshot(stored, countFromRegistrations());
+            });
+        } finally {
+            releaseFence();
+        }
+    }
+
+    private void awaitPaused(LocalDateTime pauseAt, LocalDateTime deadline) {
+        Duration liveness = Duration.ofMillis(flushIntervalMillis * 3).plus(fenceTimeout);
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            if (!now.isBefore(pauseAt)) {
+                List<JobCheckpoint> nodes = checkpointRepository.findByJobNameStartingWithAndUpdatedAtGreaterThanEqual(
+                        NODE_JOB_PREFIX, now.minus(liveness));
+                if (nodes.stream().allMatch(node -> pauseAt.equals(node.getWatermark()))) {
+                    return;
+                }
+            }
+            if (!now.isBefore(deadline)) {
+                throw new IllegalStateException("等待各节点暂停计数超时，本次校准取消");
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(FENCE_POLL_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("挂号计数校准被中断");
+            }
+        }
+    }
+
+    private void releaseFence() {
+        fenceTemplate.executeWithoutResult(status -> checkpointRepository.release(FENCE_JOB_NAME, LocalDateTime.now()));
+    }
+
+    /**
+     * 把快照时刻的偏差以增量写入计数表：快照之后各节点刷入的增量不在快照中，与差值相加即可，先后顺序无关。
+     */
+    private synchronized int applyCorrections(CounterSnapshot snapshot) {
+        Set<String> keys = new HashSet<>(snapshot.expected().keySet());
+        keys.addAll(snapshot.stored().keySet());
+        LocalDateTime now = LocalDateTime.now();
+        int corrected = 0;
+        for (String key : keys) {
+            long diff = snapshot.expected().getOrDefault(key, 0L) - snapshot.stored().getOrDefault(key, 0L);
+            if (diff != 0) {
+                counterRepository.addDelta(key, diff, now);
+                Cell cell = cell(key);
+                cell.total.add(diff);
+                cell.flushed += diff;
+                corrected++;
+            }
+        }
+        if (corrected > 0) {
+            log.warn("Reconciled {} registration counter(s) against the registration table", corrected);
+        }
+        return corrected;
+    }
+
+    private void applyNow(Snapshot before, Snapshot after) {
+        if (before != null) {
+            add(before, -1);
+        }
+        if (after != null) {
+            add(after, 1);
+        }
+    }
+
+    private void add(Snapshot snapshot, long delta) {
+        if (snapshot.day() != null) {
+            cell(DAY_PREFIX + snapshot.day()).total.add(delta);
+            cell(MONTH_PREFIX + YearMonth.from(snapshot.day())).total.add(delta);
+        }
+        if (snapshot.status() != null) {
+            cell(STATUS_PREFIX + snapshot.status().name()).total.add(delta);
+        }
+        Long departmentId = snapshot.departmentId() != null ? snapshot.departmentId() : UNASSIGNED_DEPARTMENT_ID;
+        cell(DEPARTMENT_PREFIX + departmentId).total.add(delta);
+    }
+
+    /**
+     * 以表中的值为准：本节点未刷入的增量保留，其他节点写入的部分补到内存计数上。
+     */
+    private void absorb(RegistrationCounter counter) {
+        Cell cell = cell(counter.getCounterKey());
+        long stored = counter.getCounterValue() != null ? counter.getCounterValue() : 0L;
+        long remote = stored - cell.flushed;
+        if (remote != 0) {
+            cell.total.add(remote);
+            cell.flushed = stored;
+        }
+    }
+
+    private Map<String, Long> countFromRegistrations() {
+        Map<String, Long> values = new HashMap<>();
+        for (Object[] row : registrationRepository.countGroupByAppointmentDay()) {
+            LocalDate day = LocalDate.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), ((Number) row[2]).intValue());
+            long count = ((Number) row[3]).longValue();
+            values.merge(DAY_PREFIX + day, count, Long::sum);
+            values.merge(MONTH_PREFIX + YearMonth.from(day), count, Long::sum);
+        }
+        for (Object[] row : registrationRepository.countGroupByDepartmentId()) {
+            Long departmentId = row[0] != null ? ((Number) row[0]).longValue() : UNASSIGNED_DEPARTMENT_ID;
+            values.merge(DEPARTMENT_PREFIX + departmentId, ((Number) row[1]).longValue(), Long::sum);
+        }
+        for (Object[] row : registrationRepository.countGroupByStatus()) {
+            if (row[0] != null) {
+                values.merge(STATUS_PREFIX + ((Registration.Status) row[0]).name(), ((Number) row[1]).longValue(), Long::sum);
+            }
+        }
+        return values;
+    }
+
+    private long value(String key) {
+        Cell cell = cells.get(key);
+        return cell != null ? cell.total.sum() : 0L;
+    }
+
+    private Cell cell(String key) {
+        return cells.computeIfAbsent(key, k -> new Cell());
+    }
+
+    private record CounterSnapshot(Map<String, Long> stored, Map<String, Long> expected) {
+    }
+
+    private static final class Cell {
+        private final LongAdder total = new LongAdder();
+        // 本节点认为计数表中的当前值，只在持有服务锁时读写
+        private long flushed;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.JobCheckpoint;
+import com.hospital.repository.JobCheckpointRepository;
+import com.hospital.service.RegistrationRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * 挂号汇总的定时任务。
+ * 以 registration.updated_at 为水位，每次只重算水位之后有变化的挂号所在的日期；
+ * 水位向前重叠一段时间，覆盖执行期间尚未提交的事务。每天凌晨再重算最近几天，补上被物理删除的挂号。
+ */
+@Component
+public class RegistrationRollupJob {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistrationRollupJob.class);
+
+    static final String JOB_NAME = "registration-rollup";
+
+    @Autowired
+    private RegistrationRollupService rollupService;
+
+    @Autowired
+    private JobCheckpointRepository checkpointRepository;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${stats.rollup.watermark-overlap:5m}")
+    private Duration watermarkOverlap;
+
+    @Value("${stats.rollup.lease:10m}")
+    private Duration lease;
+
+    @Value("${stats.rollup.reconcile-days:2}")
+    private int reconcileDays;
+
+    @Scheduled(fixedDelayString = "${stats.rollup.interval:60000}", initialDelayString = "${stats.rollup.initial-delay:30000}")
+    public void runIncremental() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        if (!acquire(startedAt)) {
+            return;
+        }
+        try {
+            LocalDateTime watermark = checkpointRepository.findById(JOB_NAME)
+                    .map(JobCheckpoint::getWatermark)
+                    .orElse(null);
+            Set<LocalDate> days = rollupService.findDirtyDays(watermark != null ? watermark.minus(watermarkOverlap) : null);
+            for (LocalDate day : days) {
+                rollupService.rebuildDay(day);
+            }
+            checkpointRepository.completeRun(JOB_NAME, startedAt, LocalDateTime.now());
+            if (!days.isEmpty()) {
+                log.info("Registration rollup refreshed {} day(s)", days.size());
+            }
+        } catch (RuntimeException ex) {
+            checkpointRepository.release(JOB_NAME, LocalDateTime.now());
+            throw ex;
+        }
+    }
+
+    @Scheduled(cron = "${stats.rollup.reconcile-cron:0 30 2 * * *}")
+    public void reconcileRecentDays() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!acquire(now)) {
+            return;
+        }
+        try {
+            LocalDate today = now.toLocalDate();
+            for (int i = reconcileDays; i >= 0; i--) {
+                rollupService.rebuildDay(today.minusDays(i));
+            }
+        } finally {
+            checkpointRepository.release(JOB_NAME, LocalDateTime.now());
+        }
+    }
+
+    private boolean acquire(LocalDateTime now) {
+        checkpointRepository.createIfAbsent(JOB_NAME, now);
+        return checkpointRepository.tryLock(JOB_NAME, now, now.plus(lease)) == 1;
+    }
+}
@@ -0,0 +1,109 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Registration;
+import com.hospital.entity.RegistrationRollup;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.repository.RegistrationRollupRepository;
+import com.hospital.service.RegistrationCounterService;
+import com.hospital.service.RegistrationRollupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Service
+public class RegistrationRollupServiceImpl implements RegistrationRollupService {
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private RegistrationRollupRepository rollupRepository;
+
+    @Override
+    @Transactional
+    public void rebuildDay(LocalDate day) {
+        LocalDateTime start = day.atStartOfDay();
+        LocalDateTime end = day.plusDays(1).atStartOfDay();
+
+        Map<BucketKey, Totals> hourly = new HashMap<>();
+        Map<BucketKey, Totals> daily = new HashMap<>();
+        for (Object[] row : registrationRepository.rollupByHour(start, end)) {
+            LocalDateTime hour = start.plusHours(((Number) row[0]).intValue());
+            Long departmentId = row[1] != null ? ((Number) row[1]).longValue() : RegistrationCounterService.UNASSIGNED_DEPARTMENT_ID;
+            Long doctorId = ((Number) row[2]).longValue();
+            Registration.RegistrationType type = row[3] != null ? (Registration.RegistrationType) row[3] : Registration.RegistrationType.REGULAR;
+            Registration.Channel channel = row[4] != null ? (Registration.Channel) row[4] : Registration.Channel.ONLINE;
+            Registration.Status status = row[5] != null ? (Registration.Status) row[5] : Registration.Status.WAITING;
+            Registration.PaymentStatus paymentStatus = row[6] != null ? (Registration.PaymentStatus) row[6] : Registration.PaymentStatus.UNPAID;
+            long count = ((Number) row[7]).longValue();
+            BigDecimal fee = row[8] != null ? (BigDecimal) row[8] : BigDecimal.ZERO;
+
+            hourly.computeIfAbsent(new BucketKey(hour, departmentId, doctorId, type, channel, status, paymentStatus), k -> new Totals())
+                    .add(count, fee);
+            daily.computeIfAbsent(new BucketKey(start, departmentId, doctorId, type, channel, status, paymentStatus), k -> new Totals())
+                    .add(count, fee);
+        }
+
+        rollupRepository.deleteBucketsInRange(start, end);
+        List<RegistrationRollup> rows = new ArrayList<>(hourly.size() + daily.size());
+        hourly.forEach((key, totals) -> rows.add(toEntity(RegistrationRollup.Granularity.HOUR, key, totals)));
+        daily.forEach((key, totals) -> rows.add(toEntity(RegistrationRollup.Granularity.DAY, key, totals)));
+        rollupRepository.saveAll(rows);
+    }
+
+    @Override
+    public Set<LocalDate> findDirtyDays(LocalDateTime since) {
+        List<Object[]> rows = since == null
+                ? registrationRepository.findAllRegistrationDays()
+                : registrationRepository.findRegistrationDaysUpdatedSince(since);
+        Set<LocalDate> days = new TreeSet<>();
+        for (Object[] row : rows) {
+            days.add(LocalDate.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue(), ((Number) row[2]).intValue()));
+        }
+        return days;
+    }
+
+    private RegistrationRollup toEntity(RegistrationRollup.Granularity granularity, BucketKey key, Totals totals) {
+        RegistrationRollup rollup = new RegistrationRollup();
+        rollup.setGranularity(granularity);
+        rollup.setBucketStart(key.bucketStart());
+        rollup.setDepartmentId(key.departmentId());
+        rollup.setDoctorId(key.doctorId());
+        rollup.setType(key.type());
+        rollup.setChannel(key.channel());
+        rollup.setStatus(key.status());
+        rollup.setPaymentStatus(key.paymentStatus());
+        rollup.setRegistrationCount(totals.count);
+        rollup.setFeeTotal(totals.fee);
+        return rollup;
+    }
+
+    private record BucketKey(LocalDateTime bucketStart,
+                             Long departmentId,
+                             Long doctorId,
+                             Registration.RegistrationType type,
+                             Registration.Channel channel,
+                             Registration.Status status,
+                             Registration.PaymentStatus paymentStatus) {
+    }
+
+    private static final class Totals {
+        private long count;
+        private BigDecimal fee = BigDecimal.ZERO;
+
+        void add(long count, BigDecimal fee) {
+            this.count += count;
+            this.fee = this.fee.add(fee);
+        }
+    }
+}
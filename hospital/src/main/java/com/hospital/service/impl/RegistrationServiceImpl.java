@@ -6,6 +6,7 @@ import com.hospital.entity.Registration;
 import com.hospital.repository.DoctorRepository;
 import com.hospital.repository.PatientRepository;
 import com.hospital.repository.RegistrationRepository;
+import com.hospital.service.BookingService;
 import com.hospital.service.RegistrationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -26,6 +27,9 @@ public class RegistrationServiceImpl implements RegistrationService {
     @Autowired
     private DoctorRepository doctorRepository;
 
+    @Autowired
+    private BookingService bookingService;
+
     @Override
     public List<Registration> getAllRegistrations() {
         return registrationRepository.findAll();
@@ -87,7 +91,7 @@ public class RegistrationServiceImpl implements RegistrationService {
         if (registration.getAppointmentTime().isBefore(LocalDateTime.now())) {
             throw new RuntimeException("Appointment time must be in the future");
         }
-        return registrationRepository.save(registration);
+        return bookingService.book(registration);
     }
 
     @Override
@@ -95,12 +99,12 @@ public class RegistrationServiceImpl implements RegistrationService {
         Optional<Registration> existingRegistration = registrationRepository.findById(id);
         if (existingRegistration.isPresent()) {            Registration updatedRegistration = existingRegistration.get();
             // 只更新状态和备注字段，这些是前端表单中可编辑的字段
-            if (registration.getStatus() != null) {
-                updatedRegistration.setStatus(registration.getStatus());
-            }
             if (registration.getNotes() != null) {
                 updatedRegistration.setNotes(registration.getNotes());
             }
+            if (registration.getStatus() != null) {
+                return bookingService.changeStatus(updatedRegistration, registration.getStatus());
+            }
             return registrationRepository.save(updatedRegistration);
         } else {
             throw new RuntimeException("Registration not found with id: " + id);
@@ -111,9 +115,7 @@ public class RegistrationServiceImpl implements RegistrationService {
     public Registration updateRegistrationStatus(Long id, Registration.Status status) {
         Optional<Registration> existingRegistration = registrationRepository.findById(id);
         if (existingRegistration.isPresent()) {
-            Registration registration = existingRegistration.get();
-            registration.setStatus(status);
-            return registrationRepository.save(registration);
+            return bookingService.changeStatus(existingRegistration.get(), status);
         } else {
             throw new RuntimeException("Registration not found with id: " + id);
         }
@@ -121,9 +123,10 @@ public class RegistrationServiceImpl implements RegistrationService {
 
     @Override
     public void deleteRegistration(Long id) {
-        if (!registrationRepository.existsById(id)) {
-            throw new RuntimeException("Registration not found with id: " + id);
-        }
+        Registration registration = registrationRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Registration not found with id: " + id));
+        // 删除前先释放占用的排班号源
+        bookingService.cancel(registration);
         registrationRepository.deleteById(id);
     }
 }
@@ -0,0 +1,109 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Schedule;
+import com.hospital.model.ScheduleHeatmapDto;
+import com.hospital.repository.ScheduleRepository;
+import com.hospital.service.ScheduleHeatmapService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+public class ScheduleHeatmapServiceImpl implements ScheduleHeatmapService {
+
+    private static final long MAX_RANGE_DAYS = 92;
+
+    private static final int CAPACITY = 0;
+    private static final int BOOKED = 1;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Override
+    public ScheduleHeatmapDto getHeatmap(LocalDate from, LocalDate to, int blockHours) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("时间范围不合法");
+        }
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        if (days > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("时间跨度过大，最多查询 " + MAX_RANGE_DAYS + " 天");
+        }
+        if (blockHours < 1 || blockHours > 24) {
+            throw new IllegalArgumentException("时段长度必须在 1～24 小时之间");
+        }
+        int blockCount = (24 + blockHours - 1) / blockHours;
+
+        List<Object[]> rows = scheduleRepository.sumCapacityByDepartmentDateAndHour(
+                from, to, Schedule.ScheduleStatus.PAUSED);
+
+        // 科室按名称排序后编号；日期与时段直接按偏移量编号
+        Map<Long, String> names = new HashMap<>();
+        for (Object[] row : rows) {
+            names.putIfAbsent((Long) row[0], (String) row[1]);
+        }
+        List<Long> departmentIds = new ArrayList<>(names.keySet());
+        departmentIds.sort(Comparator.comparing((Long id) -> names.get(id), Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(id -> id));
+        List<String> departmentNames = new ArrayList<>(departmentIds.size());
+        Map<Long, Integer> departmentIndex = new HashMap<>();
+        for (Long id : departmentIds) {
+            departmentIndex.put(id, departmentNames.size());
+            departmentNames.add(names.get(id));
+        }
+
+        // 同一格子可能由多个小时汇总而来，先按 (科室, 日期, 时段) 的线性下标累加
+        Map<Integer, long[]> cells = new TreeMap<>();
+        for (Object[] row : rows) {
+            int department = departmentIndex.get((Long) row[0]);
+            int date = (int) (((LocalDate) row[2]).toEpochDay() - from.toEpochDay());
+            int block = ((Number) row[3]).intValue() / blockHours;
+            int index = (department * (int) days + date) * blockCount + block;
+            long[] cell = cells.computeIfAbsent(index, k -> new long[2]);
+            cell[CAPACITY] += ((Number) row[4]).longValue();
+            cell[BOOKED] += ((Number) row[5]).longValue();
+        }
+
+        int stride = ScheduleHeatmapDto.COLUMNS.size();
+        int[] payload = new int[cells.size() * stride];
+        int offset = 0;
+        for (Map.Entry<Integer, long[]> entry : cells.entrySet()) {
+            int index = entry.getKey();
+            long capacity = entry.getValue()[CAPACITY];
+            long booked = entry.getValue()[BOOKED];
+            payload[offset++] = index / blockCount / (int) days;
+            payload[offset++] = index / blockCount % (int) days;
+            payload[offset++] = index % blockCount;
+            payload[offset++] = (int) capacity;
+            payload[offset++] = (int) booked;
+            payload[offset++] = (int) Math.max(0, capacity - booked);
+            payload[offset++] = capacity > 0 ? (int) (booked * 1000 / capacity) : 0;
+        }
+
+        List<LocalDate> dates = new ArrayList<>((int) days);
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            dates.add(date);
+        }
+        List<String> blocks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            blocks.add(String.format("%02d:00", i * blockHours));
+        }
+
+        ScheduleHeatmapDto heatmap = new ScheduleHeatmapDto();
+        heatmap.setFrom(from);
+        heatmap.setTo(to);
+        heatmap.setBlockHours(blockHours);
+        heatmap.setDepartmentIds(departmentIds);
+        heatmap.setDepartments(departmentNames);
+        heatmap.setDates(dates);
+        heatmap.setBlocks(blocks);
+        heatmap.setCells(payload);
+        return heatmap;
+    }
+}
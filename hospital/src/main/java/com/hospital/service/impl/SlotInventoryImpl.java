@@ -0,0 +1,404 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Schedule;
+import com.hospital.repository.ScheduleRepository;
+import com.hospital.service.SlotInventory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 内存号源库存。
+ * 每个热排班一个 AtomicInteger 记录剩余号源，占用时 CAS 扣减，不访问数据库；
+ * 占用（含未提交的）立即计入待写回增量，定时合并为每个排班一条 UPDATE 写回 schedule.booked，
+ * 事务回滚时再记一个反向增量。
+ * <p>
+ * 按排班 ID 分段的读写锁把内存路径、数据库路径与加载隔开：占用、释放、写回持有读锁（互不阻塞），
+ * 加载持有写锁，并以 FOR UPDATE NOWAIT 读取排班，确保没有仍未提交的数据库路径更新，
+ * 加载时剩余号源 = capacity - booked - 待写回增量。
+ */
+@Service
+public class SlotInventoryImpl implements SlotInventory {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotInventoryImpl.class);
+
+    // 加载时等待未提交的数据库路径事务结束：每次间隔 10ms，最多重试 50 次
+    private static final int WARM_LOCK_ATTEMPTS = 50;
+    private static final long WARM_LOCK_BACKOFF_MILLIS = 10;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${booking.inventory.enabled:false}")
+    private boolean enabled;
+
+    @Value("${booking.inventory.stripes:64}")
+    private int stripeCount;
+
+    @Value("${booking.inventory.hot-threshold:20}")
+    private int hotThreshold;
+
+    @Value("${booking.inventory.hot-window:5s}")
+    private Duration hotWindow;
+
+    @Value("${booking.inventory.idle-eviction:10m}")
+    private Duration idleEviction;
+
+    private ReentrantReadWriteLock[] stripes;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService warmer;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AtomicInteger> pendingDeltas = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AtomicInteger> coldAttempts = new ConcurrentHashMap<>();
+    private final Set<Long> warming = ConcurrentHashMap.newKeySet();
+    private volatile long hotWindowStartedAt = System.nanoTime();
+
+    private final LongAdder memoryReservations = new LongAdder();
+    private final LongAdder memorySoldOut = new LongAdder();
+    private final LongAdder databaseReservations = new LongAdder();
+    private final LongAdder warmFailures = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        this.stripes = new ReentrantReadWriteLock[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        this.warmer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "slot-inventory-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean reserve(Long scheduleId, BooleanSupplier databaseReserve) {
+        if (!enabled) {
+            return databaseReserve.getAsBoolean();
+        }
+        Lock lock = stripeFor(scheduleId).readLock();
+        lock.lock();
+        try {
+            Entry entry = entries.get(scheduleId);
+            if (entry == null) {
+                recordColdAttempt(scheduleId);
+                databaseReservations.increment();
+                return databaseReserve.getAsBoolean();
+            }
+            entry.lastAccessAt = System.nanoTime();
+            if (!entry.tryTake()) {
+                memorySoldOut.increment();
+                return false;
+            }
+            addPending(scheduleId, 1);
+            memoryReservations.increment();
+        } finally {
+            lock.unlock();
+        }
+        afterCompletion(committed -> {
+            if (!committed) {
+                giveBack(scheduleId);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void release(Long scheduleId, Runnable databaseRelease) {
+        if (!enabled) {
+            databaseRelease.run();
+            return;
+        }
+        Lock lock = stripeFor(scheduleId).readLock();
+        lock.lock();
+        try {
+            if (!entries.containsKey(scheduleId)) {
+                databaseRelease.run();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        afterCompletion(committed -> {
+            if (committed) {
+                giveBack(scheduleId);
+            }
+        });
+    }
+
+    @Override
+    public boolean hasAvailable(Long scheduleId, BooleanSupplier databaseAvailable) {
+        if (!enabled) {
+            return databaseAvailable.getAsBoolean();
+        }
+        Lock lock = stripeFor(scheduleId).readLock();
+        lock.lock();
+        try {
+            Entry entry = entries.get(scheduleId);
+            return entry != null ? entry.remaining.get() > 0 : databaseAvailable.getAsBoolean();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void evict(Long scheduleId) {
+        if (!enabled || scheduleId == null) {
+            return;
+        }
+        Lock lock = stripeFor(scheduleId).writeLock();
+        lock.lock();
+        try {
+            entries.remove(scheduleId);
+            flush(scheduleId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public InventoryStats stats() {
+        long pending = 0;
+        for (AtomicInteger delta : pendingDeltas.values()) {
+            pending += Math.abs(delta.get());
+        }
+        return new InventoryStats(enabled, entries.size(), pending,
+                memoryReservations.sum(), memorySoldOut.sum(), databaseReservations.sum(),
+                warmFailures.sum(), flushFailures.sum());
+    }
+
+    /**
+     * 写回前宕机时 booked 会少于实际挂号数，启动时按有效挂号补齐今天及以后的排班。
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        int updated = scheduleRepository.raiseBookedToActiveRegistrations(LocalDate.now(), LocalDateTime.now());
+        if (updated > 0) {
+            log.warn("Slot inventory reconciliation raised booked count on {} schedules", updated);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${booking.inventory.flush-interval:200}")
+    public void flushAll() {
+        if (!enabled) {
+            return;
+        }
+        for (Long scheduleId : pendingDeltas.keySet()) {
+            Lock lock = stripeFor(scheduleId).readLock();
+            lock.lock();
+            try {
+                flush(scheduleId);
+            } finally {
+                lock.unlock();
+            }
+        }
+        long now = System.nanoTime();
+        if (now - hotWindowStartedAt > hotWindow.toNanos()) {
+            coldAttempts.clear();
+            hotWindowStartedAt = now;
+        }
+        for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            if (now - entry.getValue().lastAccessAt > idleEviction.toNanos()) {
+                evict(entry.getKey());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        warmer.shutdownNow();
+        try {
+            flushAll();
+        } catch (RuntimeException ex) {
+            log.warn("Failed to flush slot inventory on shutdown", ex);
+        }
+    }
+
+    // ================== 内部实现 ==================
+
+    /**
+     * 调用方须持有该排班分段的读锁或写锁，保证与加载互斥。
+     */
+    private void flush(Long scheduleId) {
+        AtomicInteger pending = pendingDeltas.get(scheduleId);
+        if (pending == null) {
+            return;
+        }
+        int delta = pending.getAndSet(0);
+        if (delta != 0) {
+            try {
+                scheduleRepository.addBooked(scheduleId, delta,
+                        Schedule.ScheduleStatus.OPEN, Schedule.ScheduleStatus.FULL, LocalDateTime.now());
+            } catch (RuntimeException ex) {
+                pending.addAndGet(delta);
+                flushFailures.increment();
+                log.warn("Failed to write back {} booked slots for schedule {}", delta, scheduleId, ex);
+                return;
+            }
+        }
+        pendingDeltas.computeIfPresent(scheduleId, (id, value) -> value.get() == 0 ? null : value);
+    }
+
+    private void addPending(Long scheduleId, int delta) {
+        pendingDeltas.computeIfAbsent(scheduleId, id -> new AtomicInteger()).addAndGet(delta);
+    }
+
+    /**
+     * 归还一个号源：待写回增量减一，并加回当前库存条目（已移出库存时只记增量）。
+     */
+    private void giveBack(Long scheduleId) {
+        Lock lock = stripeFor(scheduleId).readLock();
+        lock.lock();
+        try {
+            addPending(scheduleId, -1);
+            Entry entry = entries.get(scheduleId);
+            if (entry != null) {
+                entry.remaining.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordColdAttempt(Long scheduleId) {
+        int attempts = coldAttempts.computeIfAbsent(scheduleId, id -> new AtomicInteger()).incrementAndGet();
+        if (attempts >= hotThreshold && warming.add(scheduleId)) {
+            try {
+                warmer.execute(() -> {
+                    try {
+                        warm(scheduleId);
+                    } finally {
+                        warming.remove(scheduleId);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                warming.remove(scheduleId);
+            }
+        }
+    }
+
+    private void warm(Long scheduleId) {
+        Lock lock = stripeFor(scheduleId).writeLock();
+        lock.lock();
+        try {
+            if (entries.containsKey(scheduleId)) {
+                return;
+            }
+            for (int attempt = 0; attempt < WARM_LOCK_ATTEMPTS; attempt++) {
+                try {
+                    Integer remaining = transactionTemplate.execute(status -> loadRemaining(scheduleId));
+                    if (remaining != null) {
+                        entries.put(scheduleId, new Entry(remaining));
+                        log.info("Schedule {} loaded into slot inventory with {} remaining", scheduleId, remaining);
+                    }
+                    coldAttempts.remove(scheduleId);
+                    return;
+                } catch (RuntimeException ex) {
+                    // 仍有数据库路径的事务持有排班行锁，写锁已阻止新的数据库路径更新，稍后重试
+                    Thread.sleep(WARM_LOCK_BACKOFF_MILLIS);
+                }
+            }
+            warmFailures.increment();
+            log.warn("Schedule {} stays cold: row lock not acquired", scheduleId);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 只加载开放或已满的排班，其余状态继续走数据库路径（由条件更新拒绝）。
+     */
+    private Integer loadRemaining(Long scheduleId) {
+        List<Object[]> rows = scheduleRepository.lockCapacityStateNowait(scheduleId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        String status = (String) row[2];
+        if (!Schedule.ScheduleStatus.OPEN.name().equals(status) && !Schedule.ScheduleStatus.FULL.name().equals(status)) {
+            return null;
+        }
+        AtomicInteger pending = pendingDeltas.get(scheduleId);
+        int remaining = ((Number) row[0]).intValue() - ((Number) row[1]).intValue() - (pending != null ? pending.get() : 0);
+        return Math.max(0, remaining);
+    }
+
+    private void afterCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    private ReentrantReadWriteLock stripeFor(Long scheduleId) {
+        int h = scheduleId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & Integer.MAX_VALUE) % stripes.length];
+    }
+
+    private static final class Entry {
+        private final AtomicInteger remaining;
+        private volatile long lastAccessAt = System.nanoTime();
+
+        Entry(int remaining) {
+            this.remaining = new AtomicInteger(remaining);
+        }
+
+        boolean tryTake() {
+            int current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+    }
+}
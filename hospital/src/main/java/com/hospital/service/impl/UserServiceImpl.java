@@ -6,12 +6,15 @@ import com.hospital.repository.MedicalRecordRepository;
 import com.hospital.repository.PatientRepository;
 import com.hospital.repository.RegistrationRepository;
 import com.hospital.repository.UserRepository;
+import com.hospital.security.CustomUserDetailsService;
+import com.hospital.security.UserSecurityVersionRegistry;
 import com.hospital.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -35,6 +38,12 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserSecurityVersionRegistry securityVersionRegistry;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
     @Override
     public List<User> getAllUsers() {
         return userRepository.findAll();
@@ -62,17 +71,30 @@ public class UserServiceImpl implements UserService {
         Optional<User> existingUser = userRepository.findById(id);
         if (existingUser.isPresent()) {
             User updatedUser = existingUser.get();
+            String previousUsername = updatedUser.getUsername();
+            boolean securityChanged = updatedUser.getRole() != user.getRole()
+                    || updatedUser.getStatus() != user.getStatus()
+                    || !Objects.equals(previousUsername, user.getUsername());
             updatedUser.setUsername(user.getUsername());
             // 如果密码不为空，则更新密码
             if (user.getPassword() != null && !user.getPassword().isEmpty()) {
                 updatedUser.setPassword(passwordEncoder.encode(user.getPassword()));
+                securityChanged = true;
             }
             updatedUser.setRole(user.getRole());
             updatedUser.setDisplayName(user.getDisplayName());
             updatedUser.setEmail(user.getEmail());
             updatedUser.setPhone(user.getPhone());
             updatedUser.setStatus(user.getStatus());
-            return userRepository.save(updatedUser);
+            // 用户名、密码、角色或状态变化后，使已签发的无状态令牌失效（旧令牌的 subject 仍是原用户名）
+            if (securityChanged) {
+                updatedUser.bumpSecurityVersion();
+            }
+            User saved = userRepository.save(updatedUser);
+            userDetailsService.evictUser(previousUsername);
+            userDetailsService.evictUser(saved.getUsername());
+            securityVersionRegistry.invalidate(id);
+            return saved;
         } else {
             throw new RuntimeException("User not found with id: " + id);
         }
@@ -80,6 +102,8 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public void deleteUser(Long id) {
+        String username = userRepository.findById(id).map(User::getUsername).orElse(null);
+
         // 先处理Doctor相关的级联删除
         doctorRepository.findByUserId(id).ifPresent(doctor -> {
             // 删除该医生的所有挂号记录
@@ -112,5 +136,7 @@ public class UserServiceImpl implements UserService {
         
         // 最后删除User记录
         userRepository.deleteById(id);
+        userDetailsService.evictUser(username);
+        securityVersionRegistry.invalidate(id);
     }
 }
@@ -0,0 +1,322 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.Patient;
+import com.hospital.entity.Registration;
+import com.hospital.entity.Schedule;
+import com.hospital.entity.WaitlistEntry;
+import com.hospital.exception.SlotUnavailableException;
+import com.hospital.model.WaitlistEntryDto;
+import com.hospital.repository.PatientRepository;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.repository.ScheduleRepository;
+import com.hospital.repository.WaitlistEntryRepository;
+import com.hospital.service.AppointmentConflictService;
+import com.hospital.service.SlotInventory;
+import com.hospital.service.WaitlistService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个排班的候补在内存中是一个按候补 id（加入顺序）排序的优先队列，转正时 O(log n) 取出队首；
+ * 队列按需从 waitlist_entry 表加载，取空后移除，下次转正重新从表中加载，其他节点加入的候补因此不会遗漏。
+ * 候补状态只通过条件 UPDATE（WAITING → PROMOTED / LEFT）切换：并发取消时每个候补只会被一次转正成功，
+ * 已退出或已被转正的候补在出队时跳过（惰性删除）；事务回滚时已出队的候补放回队列。
+ * 转正在释放号源的事务提交后由后台线程执行，与普通挂号一样先取得患者锁、做时间冲突检测，再占用号源，
+ * 有冲突的候补本次跳过、继续等待；号源已被直接挂号占用时转正结束，候补继续等待下一次释放。
+ */
+@Service
+public class WaitlistServiceImpl implements WaitlistService {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistServiceImpl.class);
+
+    @Autowired
+    private WaitlistEntryRepository waitlistEntryRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private AppointmentConflictService appointmentConflictService;
+
+    @Autowired
+    private SlotInventory slotInventory;
+
+    private final ConcurrentHashMap<Long, ScheduleQueue> queues = new ConcurrentHashMap<>();
+
+    private ExecutorService promoter;
+
+    @PostConstruct
+    void init() {
+        this.promoter = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "waitlist-promoter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        promoter.shutdown();
+        promoter.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    @Transactional
+    public WaitlistEntryDto join(Long scheduleId, Long patientId, String notes) {
+        if (patientId == null) {
+            throw new IllegalArgumentException("患者信息不能为空");
+        }
+        Schedule schedule = scheduleRepository.findById(scheduleId)
+                .orElseThrow(() -> new IllegalArgumentException("排班不存在"));
+        Patient patient = patientRepository.findById(patientId)
+                .orElseThrow(() -> new IllegalArgumentException("患者不存在"));
+        if (!startTimeOf(schedule).isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("排班已开始，不能候补");
+        }
+        // 开启内存号源库存时 schedule.booked 落后于实际占用，以库存的判断为准
+        if (slotInventory.hasAvailable(scheduleId, () -> schedule.getStatus() != Schedule.ScheduleStatus.FULL
+                && schedule.getBooked() < schedule.getCapacity())) {
+            throw new IllegalArgumentException("该排班仍有号源，请直接挂号");
+        }
+        if (waitlistEntryRepository.existsByScheduleIdAndPatientIdAndStatus(scheduleId, patientId, WaitlistEntry.Status.WAITING)) {
+            throw new IllegalArgumentException("已在该排班的候补队列中");
+        }
+
+        WaitlistEntry entry = new WaitlistEntry();
+        entry.setSchedule(schedule);
+        entry.setPatient(patient);
+        entry.setStatus(WaitlistEntry.Status.WAITING);
+        entry.setNotes(notes);
+        WaitlistEntry saved = waitlistEntryRepository.save(entry);
+
+        // 提交后才入队，回滚的候补不会出现在内存队列中
+        Waiter waiter = new Waiter(saved.getId(), patientId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ScheduleQueue queue = queues.get(scheduleId);
+                if (queue != null) {
+                    queue.offer(waiter);
+                }
+            }
+        });
+        return toDto(saved, waitlistEntryRepository.countAhead(scheduleId, WaitlistEntry.Status.WAITING, saved.getId()) + 1);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public WaitlistEntryDto getEntry(Long scheduleId, Long entryId) {
+        WaitlistEntry entry = findEntry(scheduleId, entryId);
+        long position = entry.getStatus() == WaitlistEntry.Status.WAITING
+                ? waitlistEntryRepository.countAhead(scheduleId, WaitlistEntry.Status.WAITING, entryId) + 1
+                : 0;
+        return toDto(entry, position);
+    }
+
+    @Override
+    @Transactional
+    public void leave(Long scheduleId, Long entryId) {
+        findEntry(scheduleId, entryId);
+        if (waitlistEntryRepository.transition(entryId, WaitlistEntry.Status.WAITING, WaitlistEntry.Status.LEFT,
+                LocalDateTime.now()) == 0) {
+            throw new IllegalArgumentException("候补已转正或已退出");
+        }
+        // 内存队列中的记录在出队时跳过
+    }
+
+    @Override
+    public void promoteAfterCommit(Long scheduleId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submitPromotion(scheduleId);
+            return;
+        }
+        // afterCompletion 按注册顺序执行，内存库存归还号源之后才提交转正
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    submitPromotion(scheduleId);
+                }
+            }
+        });
+    }
+
+    private void submitPromotion(Long scheduleId) {
+        try {
+            promoter.execute(() -> {
+                try {
+                    promoteNext(scheduleId);
+                } catch (RuntimeException ex) {
+                    log.warn("Waitlist promotion failed on schedule {}", scheduleId, ex);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // 应用正在关闭，候补仍是 WAITING，下次释放号源时再转正
+            log.warn("Waitlist promotion for schedule {} skipped during shutdown", scheduleId);
+        }
+    }
+
+    boolean promoteNext(Long scheduleId) {
+        Schedule schedule = scheduleRepository.findById(scheduleId).orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+        if (schedule == null || !startTimeOf(schedule).isAfter(now)) {
+            return false;
+        }
+        LocalDateTime appointmentTime = startTimeOf(schedule);
+        // 时间冲突而跳过的候补仍在等待，本次转正结束后放回队列
+        List<Waiter> skipped = new ArrayList<>();
+        try {
+            while (true) {
+                Waiter waiter = pollNext(scheduleId);
+                if (waiter == null) {
+                    return false;
+                }
+                // 与普通挂号走同一把患者锁和冲突检测，每位候补一个事务，锁顺序为患者行、候补行、排班行
+                Outcome outcome;
+                try {
+                    outcome = appointmentConflictService.withPatientLock(waiter.patientId(),
+                            () -> promote(waiter, schedule, appointmentTime, now));
+                } catch (SlotUnavailableException ex) {
+                    // 号源已被直接挂号占用：事务回滚，候补由 requeueOnRollback 放回队列
+                    return false;
+                }
+                if (outcome == Outcome.PROMOTED) {
+                    return true;
+                }
+                if (outcome == Outcome.CONFLICT) {
+                    skipped.add(waiter);
+                }
+                // GONE：已退出、或已被并发的取消转正，直接丢弃
+            }
+        } finally {
+            ScheduleQueue queue = queues.get(scheduleId);
+            if (queue != null) {
+                skipped.forEach(queue::offer);
+            }
+            // 队列已移除时下次转正会从表中重新加载，跳过的候补仍是 WAITING，不会丢失
+        }
+    }
+
+    private Outcome promote(Waiter waiter, Schedule schedule, LocalDateTime appointmentTime, LocalDateTime now) {
+        if (appointmentConflictService.hasConflict(waiter.patientId(), appointmentTime, null)) {
+            return Outcome.CONFLICT;
+        }
+        if (waitlistEntryRepository.transition(waiter.entryId(), WaitlistEntry.Status.WAITING,
+                WaitlistEntry.Status.PROMOTED, now) == 0) {
+            return Outcome.GONE;
+        }
+        requeueOnRollback(schedule.getId(), waiter);
+        Long scheduleId = schedule.getId();
+        if (!slotInventory.reserve(scheduleId, () -> scheduleRepository.reserveSlot(scheduleId,
+                Schedule.ScheduleStatus.OPEN, Schedule.ScheduleStatus.FULL, now) > 0)) {
+            throw new SlotUnavailableException("该排班号源已被占用");
+        }
+
+        Registration registration = new Registration();
+        registration.setPatient(patientRepository.findById(waiter.patientId()).orElseThrow());
+        registration.setDoctor(schedule.getDoctor());
+        registration.setSchedule(schedule);
+        registration.setAppointmentTime(appointmentTime);
+        registration.setType(Registration.RegistrationType.valueOf(schedule.getType().name()));
+        registration.setStatus(Registration.Status.WAITING);
+        registration.setNotes("候补转正");
+        Registration saved = registrationRepository.save(registration);
+        waitlistEntryRepository.attachRegistration(waiter.entryId(), saved.getId(), now);
+        log.info("Waitlist entry {} promoted to registration {} on schedule {}", waiter.entryId(), saved.getId(), schedule.getId());
+        return Outcome.PROMOTED;
+    }
+
+    private Waiter pollNext(Long scheduleId) {
+        ScheduleQueue queue = queues.get(scheduleId);
+        if (queue == null) {
+            ScheduleQueue loaded = new ScheduleQueue();
+            for (Object[] row : waitlistEntryRepository.findQueue(scheduleId, WaitlistEntry.Status.WAITING)) {
+                loaded.offer(new Waiter((Long) row[0], (Long) row[1]));
+            }
+            ScheduleQueue existing = queues.putIfAbsent(scheduleId, loaded);
+            queue = existing != null ? existing : loaded;
+        }
+        Waiter waiter = queue.poll();
+        if (waiter == null) {
+            queues.remove(scheduleId, queue);
+        }
+        return waiter;
+    }
+
+    private void requeueOnRollback(Long scheduleId, Waiter waiter) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                ScheduleQueue queue = queues.get(scheduleId);
+                if (status != STATUS_COMMITTED && queue != null) {
+                    queue.offer(waiter);
+                }
+            }
+        });
+    }
+
+    private WaitlistEntry findEntry(Long scheduleId, Long entryId) {
+        return waitlistEntryRepository.findById(entryId)
+                .filter(entry -> entry.getSchedule().getId().equals(scheduleId))
+                .orElseThrow(() -> new IllegalArgumentException("候补记录不存在"));
+    }
+
+    private static LocalDateTime startTimeOf(Schedule schedule) {
+        return LocalDateTime.of(schedule.getWorkDate(), schedule.getStartTime());
+    }
+
+    private static WaitlistEntryDto toDto(WaitlistEntry entry, long position) {
+        WaitlistEntryDto dto = new WaitlistEntryDto();
+        dto.setId(entry.getId());
+        dto.setScheduleId(entry.getSchedule().getId());
+        dto.setPatientId(entry.getPatient().getId());
+        dto.setStatus(entry.getStatus());
+        dto.setPosition(position);
+        dto.setRegistrationId(entry.getRegistrationId());
+        dto.setCreatedAt(entry.getCreatedAt());
+        return dto;
+    }
+
+    private enum Outcome {
+        PROMOTED, CONFLICT, GONE
+    }
+
+    private record Waiter(long entryId, long patientId) {
+    }
+
+    private static final class ScheduleQueue {
+        private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.comparingLong(Waiter::entryId));
+
+        synchronized void offer(Waiter waiter) {
+            waiters.offer(waiter);
+        }
+
+        synchronized Waiter poll() {
+            return waiters.poll();
+        }
+    }
+}
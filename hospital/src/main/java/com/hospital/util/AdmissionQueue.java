@@ -0,0 +1,259 @@
+package com.hospital.util;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * 虚拟排队室：按领号顺序、以固定速率放行。
+ * 排队号按序号存放在环形数组中，位置 = 序号 - 当前放行到的序号，领号、查询、核销都是 O(1)；
+ * {@link #advance()} 由单线程定时调用，按令牌桶累积的额度逐个放行，
+ * 长时间未轮询的排队号在轮到时直接丢弃、不占用放行额度，放行后超时未使用的按放行顺序淘汰。
+ */
+public class AdmissionQueue {
+
+    public enum State {
+        WAITING, ADMITTED, EXPIRED
+    }
+
+    // Ticket.use 的取值
+    private static final int AVAILABLE = 0;
+    private static final int IN_USE = 1;
+    private static final int USED = 2;
+
+    private final int mask;
+    private final AtomicReferenceArray<Ticket> ring;
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+    // 下一个待放行的序号，只由 advance() 推进
+    private volatile long headSeq;
+
+    private final double ratePerNano;
+    private final double burst;
+    private final long pollTimeoutNanos;
+    private final long admittedTtlNanos;
+    private final LongSupplier clock;
+    private final SecureRandom random = new SecureRandom();
+
+    // 以下字段只在 advance() 中访问（调用方保证单线程）
+    private final ArrayDeque<Ticket> admitted = new ArrayDeque<>();
+    private double budget;
+    private long lastAdvanceAt;
+
+    private final AtomicLong issuedCount = new AtomicLong();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong abandonedCount = new AtomicLong();
+    private final AtomicLong consumedCount = new AtomicLong();
+
+    /**
+     * @param capacity      最多同时排队的人数，向上取整为 2 的幂
+     * @param ratePerSecond 每秒放行人数
+     * @param burst         空闲后一次最多放行的人数
+     * @param pollTimeout   排队中超过该时长未查询视为离开
+     * @param admittedTtl   放行后在该时长内未使用则作废
+     * @param clock         纳秒时钟，测试中可替换
+     */
+    public AdmissionQueue(int capacity, double ratePerSecond, int burst,
+                          Duration pollTimeout, Duration admittedTtl, LongSupplier clock) {
+        if (capacity <= 0 || ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("capacity, rate and burst must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.ratePerNano = ratePerSecond / 1_000_000_000d;
+        this.burst = burst;
+        this.pollTimeoutNanos = pollTimeout.toNanos();
+        this.admittedTtlNanos = admittedTtl.toNanos();
+        this.clock = clock;
+        this.lastAdvanceAt = clock.getAsLong();
+    }
+
+    /**
+     * 领取排队号，队列已满时返回 null。
+     */
+    public Ticket issue() {
+        long seq;
+        do {
+            seq = nextSeq.get();
+            if (seq - headSeq > mask) {
+                return null;
+            }
+        } while (!nextSeq.compareAndSet(seq, seq + 1));
+        Ticket ticket = new Ticket(newTicketId(), seq, clock.getAsLong());
+        tickets.put(ticket.id, ticket);
+        ring.set((int) (seq & mask), ticket);
+        issuedCount.incrementAndGet();
+        return ticket;
+    }
+
+    /**
+     * 查询排队号状态并刷新最近查询时间；号不存在（已作废或已使用）时返回 null。
+     */
+    public Ticket poll(String ticketId) {
+        Ticket ticket = ticketId != null ? tickets.get(ticketId) : null;
+        if (ticket != null) {
+            ticket.lastPolledAt = clock.getAsLong();
+        }
+        return ticket;
+    }
+
+    /**
+     * 核销已放行的排队号，每个号只能成功核销一次。
+     */
+    public boolean consume(String ticketId) {
+        if (!claim(ticketId)) {
+            return false;
+        }
+        commit(ticketId);
+        return true;
+    }
+
+    /**
+     * 占用已放行且未过期的排队号，占用期间同一个号不能再被使用。
+     * 之后必须调用 {@link #commit}（请求成功）或 {@link #release}（请求失败，号可再次使用）。
+     */
+    public boolean claim(String ticketId) {
+        Ticket ticket = ticketId != null ? tickets.get(ticketId) : null;
+        if (ticket == null || !ticket.admitted || !ticket.use.compareAndSet(AVAILABLE, IN_USE)) {
+            return false;
+        }
+        if (clock.getAsLong() - ticket.admittedAt > admittedTtlNanos) {
+            ticket.use.set(USED);
+            tickets.remove(ticketId, ticket);
+            return false;
+        }
+        return true;
+    }
+
+    public void commit(String ticketId) {
+        Ticket ticket = ticketId != null ? tickets.get(ticketId) : null;
+        if (ticket != null && ticket.use.compareAndSet(IN_USE, USED)) {
+            tickets.remove(ticketId, ticket);
+            consumedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 归还占用的排队号，放行有效期不重新计算。
+     */
+    public void release(String ticketId) {
+        Ticket ticket = ticketId != null ? tickets.get(ticketId) : null;
+        if (ticket != null) {
+            ticket.use.compareAndSet(IN_USE, AVAILABLE);
+        }
+    }
+
+    /**
+     * 当前排队位置（1 表示下一个放行），已放行或已作废时返回 0。
+     */
+    public long positionOf(Ticket ticket) {
+        if (ticket.admitted) {
+            return 0;
+        }
+        return Math.max(0, ticket.seq - headSeq + 1);
+    }
+
+    public State stateOf(Ticket ticket) {
+        if (ticket == null || ticket.use.get() == USED) {
+            return State.EXPIRED;
+        }
+        if (!ticket.admitted) {
+            return State.WAITING;
+        }
+        return clock.getAsLong() - ticket.admittedAt > admittedTtlNanos ? State.EXPIRED : State.ADMITTED;
+    }
+
+    /**
+     * 按速率放行并淘汰过期排队号，必须由单线程调用。返回本次放行人数。
+     */
+    public int advance() {
+        long now = clock.getAsLong();
+        budget = Math.min(burst, budget + (now - lastAdvanceAt) * ratePerNano);
+        lastAdvanceAt = now;
+
+        int admittedNow = 0;
+        long head = headSeq;
+        long tail = nextSeq.get();
+        while (budget >= 1 && head < tail) {
+            int index = (int) (head & mask);
+            Ticket ticket = ring.get(index);
+            if (ticket == null) {
+                // 已分配序号但尚未写入，下次再处理
+                break;
+            }
+            ring.set(index, null);
+            head++;
+            if (now - ticket.lastPolledAt > pollTimeoutNanos) {
+                tickets.remove(ticket.id, ticket);
+                abandonedCount.incrementAndGet();
+                continue;
+            }
+            ticket.admittedAt = now;
+            ticket.admitted = true;
+            admitted.addLast(ticket);
+            budget -= 1;
+            admittedNow++;
+        }
+        headSeq = head;
+        admittedCount.addAndGet(admittedNow);
+
+        // 放行顺序即过期顺序，从队首淘汰已使用或已超时的排队号（超时时仍在使用中的请求照常完成）
+        while (!admitted.isEmpty()) {
+            Ticket first = admitted.peekFirst();
+            if (first.use.get() != USED && now - first.admittedAt <= admittedTtlNanos) {
+                break;
+            }
+            admitted.pollFirst();
+            tickets.remove(first.id, first);
+        }
+        return admittedNow;
+    }
+
+    /**
+     * 预计等待时间（秒）。
+     */
+    public long estimatedWaitSeconds(long position) {
+        return (long) Math.ceil(position / (ratePerNano * 1_000_000_000d));
+    }
+
+    public Stats stats() {
+        return new Stats(nextSeq.get() - headSeq, tickets.size(),
+                issuedCount.get(), admittedCount.get(), abandonedCount.get(), consumedCount.get());
+    }
+
+    private String newTicketId() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public static final class Ticket {
+        private final String id;
+        private final long seq;
+        private volatile long lastPolledAt;
+        private volatile long admittedAt;
+        // 先写 admittedAt 再置位，读到 true 时 admittedAt 一定可见
+        private volatile boolean admitted;
+        private final AtomicInteger use = new AtomicInteger(AVAILABLE);
+
+        Ticket(String id, long seq, long issuedAt) {
+            this.id = id;
+            this.seq = seq;
+            this.lastPolledAt = issuedAt;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public record Stats(long waiting, int liveTickets, long issued, long admitted, long abandoned, long consumed) {
+    }
+}
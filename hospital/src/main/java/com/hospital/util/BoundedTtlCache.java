@@ -0,0 +1,174 @@
+package com.hospital.util;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 容量有界、按写入时间过期的本地缓存。
+ * 按 key 的哈希分段加锁，每段是一个按访问顺序排列的 LinkedHashMap，超出容量时淘汰最久未访问的条目。
+ * 失效操作会推进所在分段的代数，加载期间发生失效时不会把旧值写回缓存。
+ */
+public class BoundedTtlCache<K, V> {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final String name;
+    private final long ttlNanos;
+    private final Segment<K, V>[] segments;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BoundedTtlCache(String name, int maxSize, Duration ttl) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.name = name;
+        this.ttlNanos = ttl.toNanos();
+        int perSegment = Math.max(1, (maxSize + SEGMENT_COUNT - 1) / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+    }
+
+    /**
+     * 读取缓存，未命中或已过期时返回 null。
+     */
+    public V getIfPresent(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry<V> entry = segment.map.get(key);
+            if (entry != null && !isExpired(entry, System.nanoTime())) {
+                hits.increment();
+                return entry.value();
+            }
+            if (entry != null) {
+                segment.map.remove(key);
+                evictions.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 读取缓存，未命中时调用 loader 加载并写入（loader 在锁外执行，返回 null 时不缓存）。
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        Segment<K, V> segment = segmentFor(key);
+        long generation;
+        synchronized (segment) {
+            generation = segment.generation;
+        }
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            synchronized (segment) {
+                if (segment.generation == generation) {
+                    segment.map.put(key, new CacheEntry<>(loaded, System.nanoTime()));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.map.put(key, new CacheEntry<>(value, System.nanoTime()));
+        }
+    }
+
+    public void invalidate(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.generation++;
+            segment.map.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.map.clear();
+            }
+        }
+    }
+
+    /**
+     * 清理所有已过期条目，供定时任务调用。
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                Iterator<CacheEntry<V>> it = segment.map.values().iterator();
+                while (it.hasNext()) {
+                    if (isExpired(it.next(), now)) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(name, size(), hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private boolean isExpired(CacheEntry<V> entry, long now) {
+        return now - entry.writtenAt() > ttlNanos;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private record CacheEntry<V>(V value, long writtenAt) {
+    }
+
+    private static final class Segment<K, V> {
+        private final LinkedHashMap<K, CacheEntry<V>> map;
+        private long generation;
+
+        Segment(int maxSize, LongAdder evictions) {
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+
+    public record CacheStats(String name, int size, long hits, long misses, long evictions) {
+    }
+}
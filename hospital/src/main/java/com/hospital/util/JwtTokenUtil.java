@@ -1,9 +1,14 @@
 package com.hospital.util;
 
+import com.hospital.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
@@ -13,6 +18,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
@@ -20,17 +26,67 @@ public class JwtTokenUtil {
 
     public static final String AUTH_COOKIE_NAME = "HOSPITAL_AUTH_TOKEN";
 
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLE = "role";
+    static final String CLAIM_SECURITY_VERSION = "sv";
+
     @Value("${jwt.expiration}")
     private long expiration;
 
     @Value("${jwt.secret}")
     private String secret;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // 开启后令牌携带用户 ID、角色与安全版本，过滤器据此构建认证信息而不再查询用户
+    @Value("${jwt.stateless.enabled:false}")
+    private boolean statelessPrincipal;
+
+    // 签名密钥与解析器均为不可变且线程安全，启动时构建一次即可
+    private SecretKey signingKey;
+
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    // ================== 解析与校验 ==================
+
+    /**
+     * 解析并校验令牌（签名 + 有效期），每个令牌只需调用一次。
+     *
+     * @throws io.jsonwebtoken.JwtException 令牌无效、过期或签名不匹配
+     * @throws IllegalArgumentException     令牌为空
+     */
+    public VerifiedToken verify(String token) {
+        return VerifiedToken.from(getAllClaimsFromToken(token));
     }
 
-    // ================== Token ä¸­èŽ·å?Claims ==================
+    /**
+     * 从请求中取出令牌：优先 Authorization: Bearer，其次 Cookie。
+     */
+    public String resolveToken(HttpServletRequest request) {
+        final String requestTokenHeader = request.getHeader("Authorization");
+        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
+            return requestTokenHeader.substring(7);
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (AUTH_COOKIE_NAME.equals(cookie.getName())) {
+                    String token = cookie.getValue();
+                    if (token == null || token.isBlank()) {
+                        return null;
+                    }
+                    return token;
+                }
+            }
+        }
+        return null;
+    }
 
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
@@ -46,19 +102,25 @@ public class JwtTokenUtil {
     }
 
     private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parser()                   // âœ?æ–?API
-                .verifyWith(getSigningKey())         // âœ?æ›¿ä»£ setSigningKey()
-                .build()
-                .parseSignedClaims(token)      // âœ?æ›¿ä»£ parseClaimsJws()
-                .getPayload();                 // âœ?æ›¿ä»£ getBody()
+        return jwtParser.parseSignedClaims(token).getPayload();
     }
 
-    // ================== Token ç”Ÿæˆ ==================
+    // ================== Token 生成 ==================
 
     public String generateToken(UserDetails userDetails) {
         return doGenerateToken(new HashMap<>(), userDetails.getUsername());
     }
 
+    public String generateToken(User user) {
+        Map<String, Object> claims = new HashMap<>();
+        if (statelessPrincipal) {
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_ROLE, user.getRole().name());
+            claims.put(CLAIM_SECURITY_VERSION, user.currentSecurityVersion());
+        }
+        return doGenerateToken(claims, user.getUsername());
+    }
+
     public String generateTokenForUsername(String username) {
         return doGenerateToken(new HashMap<>(), username);
     }
@@ -66,21 +128,26 @@ public class JwtTokenUtil {
     private String doGenerateToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .claims(claims)
+                .id(UUID.randomUUID().toString())
                 .subject(subject)
                 .issuedAt(new Date())
                 .expiration(new Date(System.currentTimeMillis() + expiration * 1000))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
-    // ================== æ ¡éªŒ ==================
+    // ================== 校验 ==================
+
+    public boolean isStatelessPrincipal() {
+        return statelessPrincipal;
+    }
 
-    private boolean isTokenExpired(String token) {
-        return getExpirationDateFromToken(token).before(new Date());
+    public boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return userDetails.getUsername().equals(token.username())
+                && !token.isExpired();
     }
 
     public boolean validateToken(String token, UserDetails userDetails) {
-        return userDetails.getUsername().equals(getUsernameFromToken(token))
-                && !isTokenExpired(token);
+        return validateToken(verify(token), userDetails);
     }
 }
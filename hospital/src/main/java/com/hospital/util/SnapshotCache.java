@@ -0,0 +1,126 @@
+package com.hospital.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 单值快照缓存（stale-while-revalidate）。
+ * 快照在 freshFor 内直接返回；过期但未超过 maxStale 时仍返回旧快照，同时在后台刷新；
+ * 更旧或尚无快照时由调用线程同步计算。任意时刻最多只有一次计算在进行，并发请求共享同一结果。
+ * 快照的 ETag 取自值的 toString() 的哈希，要求值类型的 toString() 覆盖全部内容（如 Lombok @Data）。
+ */
+public class SnapshotCache<T> {
+
+    private final Supplier<T> loader;
+    private final long freshNanos;
+    private final long maxStaleNanos;
+    private final Executor refreshExecutor;
+
+    private volatile Snapshot<T> current;
+    private final AtomicReference<CompletableFuture<Snapshot<T>>> inFlight = new AtomicReference<>();
+
+    public SnapshotCache(Supplier<T> loader, Duration freshFor, Duration maxStale, Executor refreshExecutor) {
+        this.loader = loader;
+        this.freshNanos = freshFor.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public Snapshot<T> get() {
+        Snapshot<T> snapshot = current;
+        if (snapshot != null) {
+            long age = System.nanoTime() - snapshot.loadedAtNanos();
+            if (age <= freshNanos) {
+                return snapshot;
+            }
+            if (age <= freshNanos + maxStaleNanos) {
+                refresh(true);
+                return snapshot;
+            }
+        }
+        try {
+            return refresh(false).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * 丢弃当前快照，下一次读取重新计算。
+     */
+    public void invalidate() {
+        current = null;
+    }
+
+    private CompletableFuture<Snapshot<T>> refresh(boolean async) {
+        while (true) {
+            CompletableFuture<Snapshot<T>> existing = inFlight.get();
+            if (existing != null) {
+                return existing;
+            }
+            CompletableFuture<Snapshot<T>> mine = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            if (async) {
+                try {
+                    refreshExecutor.execute(() -> load(mine));
+                } catch (RejectedExecutionException ex) {
+                    inFlight.compareAndSet(mine, null);
+                    mine.completeExceptionally(ex);
+                }
+            } else {
+                load(mine);
+            }
+            return mine;
+        }
+    }
+
+    private void load(CompletableFuture<Snapshot<T>> future) {
+        try {
+            T value = loader.get();
+            String etag = etagOf(value);
+            Instant now = Instant.now();
+            Snapshot<T> previous = current;
+            // 内容未变时沿用上次的修改时间，If-Modified-Since 仍可命中
+            Instant modifiedAt = previous != null && previous.etag().equals(etag) ? previous.modifiedAt() : now;
+            Snapshot<T> snapshot = new Snapshot<>(value, etag, now, modifiedAt, System.nanoTime());
+            current = snapshot;
+            future.complete(snapshot);
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+        } finally {
+            inFlight.compareAndSet(future, null);
+        }
+    }
+
+    private static String etagOf(Object value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param generatedAt 本次计算完成的时间（新鲜度时间戳）
+     * @param modifiedAt  内容最近一次发生变化的时间
+     */
+    public record Snapshot<T>(T value, String etag, Instant generatedAt, Instant modifiedAt, long loadedAtNanos) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.hospital.util;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * 已通过签名与有效期校验的 JWT 载荷（不可变）。
+ * 每个请求只解析一次令牌，之后在过滤器中传递该对象，不再重复解析。
+ * userId、role、securityVersion 仅在无状态模式签发的令牌中存在，其余情况为 null；
+ * 旧版本签发的令牌没有 tokenId（jti）。
+ */
+public record VerifiedToken(String tokenId,
+                            String username,
+                            Instant issuedAt,
+                            Instant expiration,
+                            Long userId,
+                            String role,
+                            Integer securityVersion) {
+
+    static VerifiedToken from(Claims claims) {
+        Number userId = claims.get(JwtTokenUtil.CLAIM_USER_ID, Number.class);
+        Number securityVersion = claims.get(JwtTokenUtil.CLAIM_SECURITY_VERSION, Number.class);
+        return new VerifiedToken(
+                claims.getId(),
+                claims.getSubject(),
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()),
+                userId != null ? userId.longValue() : null,
+                claims.get(JwtTokenUtil.CLAIM_ROLE, String.class),
+                securityVersion != null ? securityVersion.intValue() : null
+        );
+    }
+
+    public boolean isExpired() {
+        return expiration != null && expiration.isBefore(Instant.now());
+    }
+
+    /**
+     * 令牌是否携带了足以直接构建认证信息的声明。
+     */
+    public boolean hasPrincipalClaims() {
+        return userId != null && role != null && securityVersion != null;
+    }
+
+    // Date 可变，转为 Instant 保存，保证记录不可变
+    private static Instant toInstant(Date date) {
+        return date != null ? date.toInstant() : null;
+    }
+}
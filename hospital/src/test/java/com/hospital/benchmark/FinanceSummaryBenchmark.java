@@ -0,0 +1,45 @@
+package com.hospital.benchmark;
+
+import com.hospital.model.FinanceSummaryDto;
+import com.hospital.service.FinanceService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 近一年的财务汇总耗时，统计数据库中现有的挂号（通常先用 --force-bulk 导入批量演示数据），需要数据库。
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FinanceSummaryBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(FinanceSummaryBenchmark.class);
+
+    private static final long WARMUP_MILLIS = 5_000;
+    private static final long MEASURE_MILLIS = 20_000;
+
+    @Autowired
+    private FinanceService financeService;
+
+    @Test
+    void yearlySummary() throws Exception {
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(365);
+
+        MicroBenchmark.run("finance.summary-365d", WARMUP_MILLIS, MEASURE_MILLIS,
+                () -> financeService.getSummary(from, to));
+
+        FinanceSummaryDto summary = financeService.getSummary(from, to);
+        assertNotNull(summary.getTotal());
+        log.info("finance.summary-365d: registrations={}, days={}, departments={}, doctors={}",
+                summary.getTotal().getRegistrations(), summary.getByDay().size(),
+                summary.getByDepartment().size(), summary.getByDoctor().size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.hospital.benchmark;
+
+import com.hospital.util.JwtTokenUtil;
+import com.hospital.util.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 每个请求的令牌校验：原实现每次解析都重新生成密钥、构建解析器，
+ * 且一个请求解析三次（取用户名、校验时再取用户名和过期时间）；
+ * 现实现启动时构建一次密钥与解析器，每个令牌只解析一次。
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+    private static final long WARMUP_MILLIS = 3_000;
+    private static final long MEASURE_MILLIS = 5_000;
+
+    private JwtTokenUtil jwtTokenUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        jwtTokenUtil = new JwtTokenUtil();
+        ReflectionTestUtils.setField(jwtTokenUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtTokenUtil, "expiration", 3600L);
+        ReflectionTestUtils.invokeMethod(jwtTokenUtil, "init");
+        userDetails = new User("benchmark_user", "n/a", List.of());
+        token = jwtTokenUtil.generateToken(userDetails);
+    }
+
+    @Test
+    void verifyOnceAgainstPerCallParsing() throws Exception {
+        MicroBenchmark.Result baseline = MicroBenchmark.run("jwt.parse-three-times", WARMUP_MILLIS, MEASURE_MILLIS,
+                () -> legacyValidate(token, userDetails));
+        MicroBenchmark.Result current = MicroBenchmark.run("jwt.verify-once", WARMUP_MILLIS, MEASURE_MILLIS,
+                () -> {
+                    VerifiedToken verified = jwtTokenUtil.verify(token);
+                    return jwtTokenUtil.validateToken(verified, userDetails);
+                });
+        MicroBenchmark.compare(baseline, current);
+        assertTrue(legacyValidate(token, userDetails));
+    }
+
+    // 原 JwtAuthenticationFilter + JwtTokenUtil 的调用序列
+    private static boolean legacyValidate(String token, UserDetails userDetails) {
+        String username = legacyClaims(token).getSubject();
+        return userDetails.getUsername().equals(username)
+                && userDetails.getUsername().equals(legacyClaims(token).getSubject())
+                && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    private static Claims legacyClaims(String token) {
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        return Jwts.parser()
+                .verifyWith(key)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+}
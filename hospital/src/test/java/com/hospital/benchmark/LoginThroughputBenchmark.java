@@ -0,0 +1,80 @@
+package com.hospital.benchmark;
+
+import com.hospital.entity.User;
+import com.hospital.repository.UserRepository;
+import com.hospital.security.CustomUserDetailsService;
+import com.hospital.service.AuthService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 单线程登录吞吐（每核每秒登录次数），需要数据库。
+ * 原流程：AuthenticationManager 认证（DAO 查询一次用户 + BCrypt），loadUserByUsername 再查一次，
+ * findByUsername 第三次查询取角色；现流程 AuthService.login 查询一次、比对一次并记录 lastLoginAt。
+ * 原流程没有 UserDetails 缓存，重放时每次查询前清除缓存。
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class LoginThroughputBenchmark {
+
+    private static final String PASSWORD = "benchmark-password";
+    private static final long WARMUP_MILLIS = 5_000;
+    private static final long MEASURE_MILLIS = 15_000;
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("login_benchmark_" + System.nanoTime() % 1_000_000_000L);
+        user.setPassword(passwordEncoder.encode(PASSWORD));
+        user.setRole(User.Role.PATIENT);
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDetailsService.evictUser(user.getUsername());
+        userRepository.delete(user);
+    }
+
+    @Test
+    void singlePassLoginAgainstTripleLookup() throws Exception {
+        String username = user.getUsername();
+        MicroBenchmark.Result baseline = MicroBenchmark.run("login.triple-lookup", WARMUP_MILLIS, MEASURE_MILLIS, () -> {
+            userDetailsService.evictUser(username);
+            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, PASSWORD));
+            userDetailsService.evictUser(username);
+            userDetailsService.loadUserByUsername(username);
+            return userRepository.findByUsername(username).orElseThrow().getRole();
+        });
+        MicroBenchmark.Result current = MicroBenchmark.run("login.single-pass", WARMUP_MILLIS, MEASURE_MILLIS,
+                () -> authService.login(username, PASSWORD).getRole());
+        MicroBenchmark.compare(baseline, current);
+        assertEquals(User.Role.PATIENT, authService.login(username, PASSWORD).getRole());
+    }
+}
@@ -0,0 +1,66 @@
+package com.hospital.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 项目内的简易微基准：固定时长预热后单线程计时，结果即每核吞吐。
+ * 基准测试默认不运行，加 -Dbenchmark=true 启用，例如
+ * mvn test -Dtest='*Benchmark' -Dbenchmark=true
+ * 结果只用于同一台机器上新旧路径的相对比较。
+ */
+final class MicroBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(MicroBenchmark.class);
+
+    // 防止 JIT 把无副作用的调用整体消除
+    private static volatile Object sink;
+
+    private MicroBenchmark() {
+    }
+
+    static Result run(String name, long warmupMillis, long measureMillis, Operation operation) throws Exception {
+        loop(operation, TimeUnit.MILLISECONDS.toNanos(warmupMillis));
+        long start = System.nanoTime();
+        long ops = loop(operation, TimeUnit.MILLISECONDS.toNanos(measureMillis));
+        long elapsed = System.nanoTime() - start;
+        Result result = new Result(name, ops, elapsed);
+        log.info("{}: {} ops in {} ms, {} ops/s per core, {} us/op",
+                name, ops, elapsed / 1_000_000,
+                String.format("%.1f", result.opsPerSecond()),
+                String.format("%.2f", result.microsPerOp()));
+        return result;
+    }
+
+    static void compare(Result baseline, Result candidate) {
+        log.info("{} vs {}: {}x throughput", candidate.name(), baseline.name(),
+                String.format("%.2f", candidate.opsPerSecond() / baseline.opsPerSecond()));
+    }
+
+    private static long loop(Operation operation, long durationNanos) throws Exception {
+        long deadline = System.nanoTime() + durationNanos;
+        long ops = 0;
+        do {
+            sink = operation.run();
+            ops++;
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    @FunctionalInterface
+    interface Operation {
+        Object run() throws Exception;
+    }
+
+    record Result(String name, long ops, long elapsedNanos) {
+        double opsPerSecond() {
+            return ops * 1e9 / elapsedNanos;
+        }
+
+        double microsPerOp() {
+            return elapsedNanos / 1e3 / ops;
+        }
+    }
+}
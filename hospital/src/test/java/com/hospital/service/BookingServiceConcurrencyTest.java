@@ -0,0 +1,198 @@
+package com.hospital.service;
+
+import com.hospital.entity.Department;
+import com.hospital.entity.Doctor;
+import com.hospital.entity.Patient;
+import com.hospital.entity.Registration;
+import com.hospital.entity.Schedule;
+import com.hospital.entity.User;
+import com.hospital.exception.SlotUnavailableException;
+import com.hospital.repository.DepartmentRepository;
+import com.hospital.repository.DoctorRepository;
+import com.hospital.repository.PatientRepository;
+import com.hospital.repository.RegistrationRepository;
+import com.hospital.repository.ScheduleRepository;
+import com.hospital.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class BookingServiceConcurrencyTest {
+
+    private static final int THREADS = 300;
+    private static final int CAPACITY = 10;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    private final List<Registration> created = new ArrayList<>();
+    private Department department;
+    private Doctor doctor;
+    private Patient patient;
+    private Schedule schedule;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime() % 1_000_000_000L);
+
+        department = new Department();
+        department.setCode("BT" + suffix);
+        department.setName("Booking Test " + suffix);
+        department = departmentRepository.save(department);
+
+        doctor = new Doctor();
+        doctor.setUser(saveUser("booking_doctor_" + suffix, User.Role.DOCTOR));
+        doctor.setName("Booking Doctor");
+        doctor.setGender(Doctor.Gender.MALE);
+        doctor.setTitle("Attending Physician");
+        doctor.setPhone("13800000000");
+        doctor.setDepartment(department);
+        doctor = doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setUser(saveUser("booking_patient_" + suffix, User.Role.PATIENT));
+        patient.setName("Booking Patient");
+        patient.setGender(Patient.Gender.FEMALE);
+        patient.setAge(30);
+        patient.setIdCard(String.format("%018d", System.nanoTime() % 1_000_000_000_000L));
+        patient.setPhone("13900000000");
+        patient = patientRepository.save(patient);
+
+        schedule = new Schedule();
+        schedule.setDoctor(doctor);
+        schedule.setDepartment(department);
+        schedule.setWorkDate(LocalDate.now().plusDays(1));
+        schedule.setStartTime(LocalTime.of(8, 0));
+        schedule.setEndTime(LocalTime.of(12, 0));
+        schedule.setType(Schedule.ScheduleType.REGULAR);
+        schedule.setStatus(Schedule.ScheduleStatus.OPEN);
+        schedule.setCapacity(CAPACITY);
+        schedule.setBooked(CAPACITY - 1);
+        schedule = scheduleRepository.save(schedule);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registrationRepository.deleteAll(created);
+        scheduleRepository.delete(schedule);
+        doctorRepository.delete(doctor);
+        patientRepository.delete(patient);
+        userRepository.delete(doctor.getUser());
+        userRepository.delete(patient.getUser());
+        departmentRepository.delete(department);
+    }
+
+    @Test
+    void onlyOneOfManyConcurrentBookingsGetsTheLastSlot() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Registration> booked = new ConcurrentLinkedQueue<>();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        booked.add(bookingService.book(newRegistration()));
+                    } catch (SlotUnavailableException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+            created.addAll(booked);
+        }
+
+        assertEquals(1, booked.size());
+        assertEquals(THREADS - 1, rejected.get());
+        Schedule full = scheduleRepository.findById(schedule.getId()).orElseThrow();
+        assertEquals(CAPACITY, full.getBooked());
+        assertEquals(Schedule.ScheduleStatus.FULL, full.getStatus());
+
+        // 取消后释放号源并恢复开放；重复取消不会再次释放。
+        // 挂号带乐观锁版本号，第二次取消按重复请求的方式重新读取，而不是复用已过期的实体
+        Registration winner = booked.peek();
+        bookingService.cancel(winner);
+        bookingService.cancel(registrationRepository.findById(winner.getId()).orElseThrow());
+        Schedule reopened = scheduleRepository.findById(schedule.getId()).orElseThrow();
+        assertEquals(CAPACITY - 1, reopened.getBooked());
+        assertEquals(Schedule.ScheduleStatus.OPEN, reopened.getStatus());
+        assertTrue(registrationRepository.findById(winner.getId())
+                .map(r -> r.getStatus() == Registration.Status.CANCELLED)
+                .orElse(false));
+    }
+
+    @Test
+    void bookingOutsideTheScheduleIsRejectedWithoutTakingASlot() {
+        Registration wrongTime = newRegistration();
+        wrongTime.setAppointmentTime(schedule.getWorkDate().atTime(14, 0));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.book(wrongTime));
+
+        Registration wrongDay = newRegistration();
+        wrongDay.setAppointmentTime(schedule.getWorkDate().plusDays(1).atTime(9, 0));
+        assertThrows(IllegalArgumentException.class, () -> bookingService.book(wrongDay));
+
+        assertEquals(CAPACITY - 1, scheduleRepository.findById(schedule.getId()).orElseThrow().getBooked());
+    }
+
+    private Registration newRegistration() {
+        Registration registration = new Registration();
+        registration.setPatient(patient);
+        registration.setDoctor(doctor);
+        registration.setSchedule(schedule);
+        registration.setAppointmentTime(schedule.getWorkDate().atTime(9, 0));
+        return registration;
+    }
+
+    private User saveUser(String username, User.Role role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("test");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
@@ -0,0 +1,136 @@
+package com.hospital.service.impl;
+
+import com.hospital.entity.MailOutbox;
+import com.hospital.repository.MailOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 发件箱的重试退避与状态流转，使用 Mock 的仓库与 SMTP 发送器，不依赖数据库。
+ */
+class MailOutboxServiceImplTest {
+
+    private final MailOutboxRepository repository = mock(MailOutboxRepository.class);
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final MailOutboxServiceImpl service = new MailOutboxServiceImpl();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "mailOutboxRepository", repository);
+        ReflectionTestUtils.setField(service, "mailSender", mailSender);
+        ReflectionTestUtils.setField(service, "mailFrom", "");
+        ReflectionTestUtils.setField(service, "maxAttempts", 6);
+        ReflectionTestUtils.setField(service, "initialBackoff", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "maxBackoff", Duration.ofMinutes(30));
+    }
+
+    @Test
+    void backoffDoublesUntilTheCap() {
+        assertEquals(Duration.ofSeconds(30), service.backoff(1));
+        assertEquals(Duration.ofMinutes(1), service.backoff(2));
+        assertEquals(Duration.ofMinutes(16), service.backoff(6));
+        assertEquals(Duration.ofMinutes(30), service.backoff(7));
+        assertEquals(Duration.ofMinutes(30), service.backoff(100));
+    }
+
+    @Test
+    void failedSendIsRescheduledWithBackoff() {
+        MailOutbox mail = mail(null);
+        mail.setAttempts(2);
+        failSends();
+
+        LocalDateTime before = LocalDateTime.now();
+        service.sendBatch(List.of(mail));
+
+        assertEquals(MailOutbox.Status.PENDING, mail.getStatus());
+        assertEquals(3, mail.getAttempts());
+        assertFalse(mail.getNextAttemptAt().isBefore(before.plus(Duration.ofMinutes(2))));
+        assertEquals("smtp down", mail.getLastError());
+        verify(repository).save(mail);
+    }
+
+    @Test
+    void lastAttemptMovesMailToFailed() {
+        MailOutbox mail = mail(null);
+        mail.setAttempts(5);
+        failSends();
+
+        service.sendBatch(List.of(mail));
+
+        assertEquals(MailOutbox.Status.FAILED, mail.getStatus());
+        assertEquals(6, mail.getAttempts());
+        assertEquals("code 123456", mail.getBody());
+        assertEquals(1, service.stats().deadLettered());
+    }
+
+    @Test
+    void expiringMailIsDroppedInsteadOfRetriedPastItsExpiry() {
+        // 第 3 次失败后需等待 2 分钟，而验证码 1 分钟后过期
+        MailOutbox mail = mail(LocalDateTime.now().plusMinutes(1));
+        mail.setAttempts(2);
+        failSends();
+
+        service.sendBatch(List.of(mail));
+
+        assertEquals(MailOutbox.Status.EXPIRED, mail.getStatus());
+        assertEquals(MailOutboxServiceImpl.REDACTED_BODY, mail.getBody());
+        assertEquals(0, service.stats().retried());
+        assertEquals(1, service.stats().expiredDropped());
+    }
+
+    @Test
+    void expiredMailIsNotSent() {
+        MailOutbox mail = mail(LocalDateTime.now().minusSeconds(1));
+
+        service.sendBatch(List.of(mail));
+
+        verify(mailSender, never()).send(any(SimpleMailMessage[].class));
+        assertEquals(MailOutbox.Status.EXPIRED, mail.getStatus());
+        assertEquals(MailOutboxServiceImpl.REDACTED_BODY, mail.getBody());
+    }
+
+    @Test
+    void sentMailIsMarkedSentAndRedacted() {
+        MailOutbox mail = mail(LocalDateTime.now().plusMinutes(10));
+
+        service.sendBatch(List.of(mail));
+
+        verify(repository).markSent(eq(List.of(mail.getId())), any(LocalDateTime.class));
+        verify(repository).redactExpiring(eq(List.of(mail.getId())), eq(MailOutboxServiceImpl.REDACTED_BODY));
+        verify(repository, never()).save(any(MailOutbox.class));
+        assertTrue(service.stats().sent() > 0);
+    }
+
+    private void failSends() {
+        doThrow(new MailSendException("smtp down")).when(mailSender).send(any(SimpleMailMessage[].class));
+    }
+
+    private static MailOutbox mail(LocalDateTime expiresAt) {
+        MailOutbox mail = new MailOutbox();
+        mail.setId(1L);
+        mail.setRecipient("patient@example.com");
+        mail.setSubject("验证码");
+        mail.setBody("code 123456");
+        mail.setStatus(MailOutbox.Status.SENDING);
+        mail.setExpiresAt(expiresAt);
+        return mail;
+    }
+}
@@ -0,0 +1,154 @@
+package com.hospital.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 排队室的本地负载模拟，使用可控时钟，不依赖 Spring 与数据库。
+ */
+class AdmissionQueueTest {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong clock = new AtomicLong(1);
+
+    @Test
+    void admitsWaitingClientsInOrderAtTheConfiguredRate() throws Exception {
+        int clients = 200_000;
+        int rate = 1_000;
+        int simulatedSeconds = 60;
+        AdmissionQueue queue = new AdmissionQueue(262_144, rate, rate / 10,
+                Duration.ofSeconds(30), Duration.ofMinutes(2), clock::get);
+
+        // 8 个线程并发领号，模拟放号瞬间的涌入
+        ConcurrentLinkedQueue<Client> issued = new ConcurrentLinkedQueue<>();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < clients / 8; i++) {
+                    AdmissionQueue.Ticket ticket = queue.issue();
+                    assertNotNull(ticket);
+                    issued.add(new Client(ticket, queue.positionOf(ticket)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        List<Client> ordered = new ArrayList<>(issued);
+        ordered.sort(Comparator.comparingLong(Client::initialPosition));
+        assertEquals(clients, ordered.size());
+        for (int i = 0; i < ordered.size(); i++) {
+            assertEquals(i + 1, ordered.get(i).initialPosition());
+        }
+
+        // 每 10 个客户端中有 1 个领号后离开，其余每 5 秒查询一次
+        int ticksPerSecond = (int) (TimeUnit.SECONDS.toNanos(1) / TICK_NANOS);
+        int maxPerSecond = 0;
+        long totalAdmitted = 0;
+        for (int second = 0; second < simulatedSeconds; second++) {
+            int admittedThisSecond = 0;
+            for (int tick = 0; tick < ticksPerSecond; tick++) {
+                clock.addAndGet(TICK_NANOS);
+                admittedThisSecond += queue.advance();
+            }
+            maxPerSecond = Math.max(maxPerSecond, admittedThisSecond);
+            totalAdmitted += admittedThisSecond;
+            if (second % 5 == 4) {
+                for (int i = 0; i < ordered.size(); i++) {
+                    if (i % 10 != 0) {
+                        queue.poll(ordered.get(i).ticket().getId());
+                    }
+                }
+            }
+        }
+
+        AdmissionQueue.Stats stats = queue.stats();
+        assertTrue(maxPerSecond <= rate + rate / 10, "admitted " + maxPerSecond + " in one second");
+        assertTrue(Math.abs(totalAdmitted - (long) rate * simulatedSeconds) <= rate / 10,
+                "admitted " + totalAdmitted + " in " + simulatedSeconds + "s");
+        assertTrue(stats.abandoned() > 0, "clients that stopped polling must be dropped");
+
+        // 放行严格按领号顺序：仍在等待的客户端之前没有未放行的活跃客户端
+        boolean seenWaiting = false;
+        for (int i = 0; i < ordered.size(); i++) {
+            if (i % 10 == 0) {
+                continue;
+            }
+            AdmissionQueue.State state = queue.stateOf(ordered.get(i).ticket());
+            if (state == AdmissionQueue.State.WAITING) {
+                seenWaiting = true;
+            } else {
+                assertFalse(seenWaiting, "client " + i + " admitted ahead of an earlier waiting client");
+                assertEquals(AdmissionQueue.State.ADMITTED, state);
+            }
+        }
+        assertTrue(seenWaiting);
+        assertEquals(clients - stats.admitted() - stats.abandoned(), stats.waiting());
+    }
+
+    @Test
+    void rejectsNewTicketsWhenFullAndFreesRoomAsClientsAreAdmitted() {
+        AdmissionQueue queue = new AdmissionQueue(1_024, 10, 10,
+                Duration.ofSeconds(30), Duration.ofMinutes(2), clock::get);
+        for (int i = 0; i < 1_024; i++) {
+            assertNotNull(queue.issue());
+        }
+        assertNull(queue.issue());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(10, queue.advance());
+        assertNotNull(queue.issue());
+    }
+
+    @Test
+    void admittedTicketIsSingleUseAndExpires() {
+        AdmissionQueue queue = new AdmissionQueue(16, 1, 1,
+                Duration.ofSeconds(30), Duration.ofMinutes(2), clock::get);
+        AdmissionQueue.Ticket first = queue.issue();
+        AdmissionQueue.Ticket second = queue.issue();
+        assertFalse(queue.consume(first.getId()), "waiting ticket cannot be used");
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, queue.advance());
+        assertEquals(AdmissionQueue.State.ADMITTED, queue.stateOf(queue.poll(first.getId())));
+        assertEquals(1, queue.positionOf(queue.poll(second.getId())));
+        // 请求失败时归还的排队号可以再次使用，占用期间不能被并发请求重复使用
+        assertTrue(queue.claim(first.getId()));
+        assertFalse(queue.claim(first.getId()), "ticket in use by another request");
+        queue.release(first.getId());
+        assertEquals(AdmissionQueue.State.ADMITTED, queue.stateOf(queue.poll(first.getId())));
+        assertTrue(queue.consume(first.getId()));
+        assertFalse(queue.consume(first.getId()));
+        assertNull(queue.poll(first.getId()));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        queue.advance();
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(3));
+        queue.advance();
+        assertFalse(queue.consume(second.getId()));
+        assertNull(queue.poll(second.getId()));
+    }
+
+    private record Client(AdmissionQueue.Ticket ticket, long initialPosition) {
+    }
+}